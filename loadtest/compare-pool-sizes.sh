@@ -0,0 +1,57 @@
+#!/usr/bin/env bash
+# Runs users.js against the server with the pool profile once per connection
+# pool size and prints throughput, tail latency and the mean time requests
+# waited for a connection of the read and the write pool. Needs java 21, k6,
+# jq and curl. The rate limits are disabled, all virtual users share one
+# address.
+#
+#   ./loadtest/compare-pool-sizes.sh [VUS] [DURATION] [SIZES...]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+VUS="${1:-200}"
+DURATION="${2:-60s}"
+SIZES=(2 5 10 20 50)
+if [ $# -gt 2 ]; then SIZES=("${@:3}"); fi
+PORT="${PORT:-8080}"
+MANAGEMENT_PORT="${MANAGEMENT_PORT:-8081}"
+RESULTS="build/loadtest"
+mkdir -p "$RESULTS"
+
+./gradlew -q bootJar
+
+# mean acquire time in ms of a pool from the Prometheus metrics
+acquire_ms() {
+  awk -v pool="pool=\"$2\"" '
+    index($0, "hikaricp_connections_acquire_seconds_sum{") == 1 && index($0, pool) { sum = $NF }
+    index($0, "hikaricp_connections_acquire_seconds_count{") == 1 && index($0, pool) { count = $NF }
+    END { printf "%.3f", (count > 0 ? sum / count * 1000 : 0) }' "$1"
+}
+
+for size in "${SIZES[@]}"; do
+  java -Dspring.profiles.active=pool -Dusers.pool.size="$size" -Dusers.ratelimit.enabled=false \
+    -Dserver.port="$PORT" -Dmanagement.server.port="$MANAGEMENT_PORT" \
+    -jar build/libs/soprafs23.jar > "$RESULTS/server-pool-$size.log" 2>&1 &
+  server=$!
+  trap 'kill $server 2>/dev/null || true' EXIT
+  until curl -sf "http://localhost:$PORT/" > /dev/null; do sleep 0.5; done
+
+  k6 run --quiet -e BASE_URL="http://localhost:$PORT" -e VUS="$VUS" -e DURATION="$DURATION" \
+    --summary-export "$RESULTS/summary-pool-$size.json" loadtest/users.js
+  curl -sf "http://localhost:$MANAGEMENT_PORT/actuator/prometheus" > "$RESULTS/metrics-pool-$size.txt"
+
+  kill "$server"
+  wait "$server" 2>/dev/null || true
+done
+
+printf '%-6s %12s %10s %10s %16s %16s\n' pool 'req/s' 'p50 ms' 'p99 ms' 'read wait ms' 'write wait ms'
+for size in "${SIZES[@]}"; do
+  jq -r --arg size "$size" \
+      --arg read "$(acquire_ms "$RESULTS/metrics-pool-$size.txt" users-read)" \
+      --arg write "$(acquire_ms "$RESULTS/metrics-pool-$size.txt" users-write)" '[$size,
+      (.metrics.http_reqs.rate | floor),
+      .metrics.http_req_duration["p(50)"],
+      .metrics.http_req_duration["p(99)"],
+      $read, $write] | @tsv' "$RESULTS/summary-pool-$size.json" |
+    awk -F'\t' '{ printf "%-6s %12s %10.2f %10.2f %16s %16s\n", $1, $2, $3, $4, $5, $6 }'
+done
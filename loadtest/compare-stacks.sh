@@ -0,0 +1,61 @@
+#!/usr/bin/env bash
+# Runs stacks.js with VUS requests in flight once against the servlet stack and
+# once against the reactive stack (WebFlux + R2DBC) and prints throughput,
+# tail latency, failed requests and the peak resident memory and thread count
+# of the server. Needs java 21, k6, jq, curl and a high enough open file
+# limit (ulimit -n) for the server and k6. The rate limits are disabled, all
+# virtual users share one address.
+#
+#   ./loadtest/compare-stacks.sh [VUS] [DURATION]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+VUS="${1:-10000}"
+DURATION="${2:-60s}"
+PORT="${PORT:-8080}"
+RESULTS="build/loadtest"
+mkdir -p "$RESULTS"
+
+./gradlew -q bootJar
+
+# records the peak RSS (KB) and thread count of a process until it exits
+sample() {
+  local pid=$1 out=$2 rss=0 threads=0
+  while kill -0 "$pid" 2>/dev/null; do
+    read -r current_rss current_threads < <(ps -o rss=,nlwp= -p "$pid" || echo "0 0")
+    if [ "${current_rss:-0}" -gt "$rss" ]; then rss=$current_rss; fi
+    if [ "${current_threads:-0}" -gt "$threads" ]; then threads=$current_threads; fi
+    echo "$rss $threads" > "$out"
+    sleep 1
+  done
+}
+
+for stack in servlet reactive; do
+  profile=""
+  if [ "$stack" = reactive ]; then profile=reactive; fi
+
+  java -Dspring.profiles.active="$profile" -Dusers.ratelimit.enabled=false -Dserver.port="$PORT" \
+    -jar build/libs/soprafs23.jar > "$RESULTS/server-$stack.log" 2>&1 &
+  server=$!
+  trap 'kill $server 2>/dev/null || true' EXIT
+  until curl -sf "http://localhost:$PORT/" > /dev/null; do sleep 0.5; done
+
+  sample "$server" "$RESULTS/peak-$stack.txt" &
+  k6 run --quiet -e BASE_URL="http://localhost:$PORT" -e VUS="$VUS" -e DURATION="$DURATION" \
+    --summary-export "$RESULTS/summary-$stack.json" loadtest/stacks.js || true
+
+  kill "$server"
+  wait "$server" 2>/dev/null || true
+done
+
+printf '%-9s %10s %10s %10s %9s %13s %9s\n' stack 'req/s' 'p50 ms' 'p99 ms' 'failed' 'peak RSS MB' 'threads'
+for stack in servlet reactive; do
+  read -r rss threads < "$RESULTS/peak-$stack.txt"
+  jq -r --arg stack "$stack" --arg rss "$rss" --arg threads "$threads" '[$stack,
+      (.metrics.http_reqs.rate | floor),
+      .metrics.http_req_duration["p(50)"],
+      .metrics.http_req_duration["p(99)"],
+      .metrics.http_req_failed.value,
+      $rss, $threads] | @tsv' "$RESULTS/summary-$stack.json" |
+    awk -F'\t' '{ printf "%-9s %10s %10.2f %10.2f %8.2f%% %13d %9s\n", $1, $2, $3, $4, $5 * 100, $6 / 1024, $7 }'
+done
@@ -0,0 +1,44 @@
+#!/usr/bin/env bash
+# Runs users.js against the server once on Tomcat's platform-thread pool and
+# once on virtual threads (spring.threads.virtual.enabled) and prints
+# throughput and tail latency of both runs. Needs java 21, k6 and jq. The
+# rate limits are disabled, all virtual users share one address.
+#
+#   ./loadtest/compare-thread-modes.sh [VUS] [DURATION]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+VUS="${1:-200}"
+DURATION="${2:-60s}"
+PORT="${PORT:-8080}"
+RESULTS="build/loadtest"
+mkdir -p "$RESULTS"
+
+./gradlew -q bootJar
+
+for mode in platform virtual; do
+  virtual=false
+  if [ "$mode" = virtual ]; then virtual=true; fi
+
+  java -Dspring.threads.virtual.enabled="$virtual" -Dserver.port="$PORT" -Dusers.ratelimit.enabled=false \
+    -jar build/libs/soprafs23.jar > "$RESULTS/server-$mode.log" 2>&1 &
+  server=$!
+  trap 'kill $server 2>/dev/null || true' EXIT
+  until curl -sf "http://localhost:$PORT/" > /dev/null; do sleep 0.5; done
+
+  k6 run --quiet -e BASE_URL="http://localhost:$PORT" -e VUS="$VUS" -e DURATION="$DURATION" \
+    --summary-export "$RESULTS/summary-$mode.json" loadtest/users.js
+
+  kill "$server"
+  wait "$server" 2>/dev/null || true
+done
+
+printf '%-10s %12s %10s %10s %10s\n' mode 'req/s' 'p50 ms' 'p99 ms' 'p99.9 ms'
+for mode in platform virtual; do
+  jq -r --arg mode "$mode" '[$mode,
+      (.metrics.http_reqs.rate | floor),
+      .metrics.http_req_duration["p(50)"],
+      .metrics.http_req_duration["p(99)"],
+      .metrics.http_req_duration["p(99.9)"]] | @tsv' "$RESULTS/summary-$mode.json" |
+    awk -F'\t' '{ printf "%-10s %12s %10.2f %10.2f %10.2f\n", $1, $2, $3, $4, $5 }'
+done
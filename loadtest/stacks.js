@@ -0,0 +1,63 @@
+// k6 load test at high concurrency for the servlet and the reactive stack:
+// GET /users/{id} and POST /login with VUS requests in flight.
+//
+//   k6 run -e BASE_URL=http://localhost:8080 -e VUS=10000 -e DURATION=60s stacks.js
+//
+// The setup seeds SEED_USERS users through POST /users, which both stacks
+// serve. k6 needs a file descriptor per virtual user (ulimit -n).
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const SEED_USERS = parseInt(__ENV.SEED_USERS || '1000');
+const VUS = parseInt(__ENV.VUS || '10000');
+const JSON_HEADERS = { headers: { 'Content-Type': 'application/json' } };
+
+export const options = {
+  scenarios: {
+    stacks: {
+      executor: 'ramping-vus',
+      startVUs: 0,
+      stages: [
+        { duration: '30s', target: VUS },
+        { duration: __ENV.DURATION || '60s', target: VUS },
+      ],
+      gracefulRampDown: '10s',
+    },
+  },
+  setupTimeout: '300s',
+  summaryTrendStats: ['avg', 'p(50)', 'p(90)', 'p(99)', 'max'],
+};
+
+export function setup() {
+  const run = Date.now();
+  const users = [];
+  for (let offset = 0; offset < SEED_USERS; offset += 100) {
+    const requests = [];
+    for (let i = offset; i < Math.min(offset + 100, SEED_USERS); i++) {
+      const user = { username: `stack-${run}-${i}`, name: `Stack User ${run} ${i}` };
+      requests.push(['POST', `${BASE_URL}/users`, JSON.stringify(user), JSON_HEADERS]);
+    }
+    for (const response of http.batch(requests)) {
+      check(response, { 'seeded': (r) => r.status === 201 });
+      if (response.status === 201) {
+        const user = response.json();
+        users.push({ id: user.id, username: user.username, name: user.name });
+      }
+    }
+  }
+  return { users };
+}
+
+export default function (data) {
+  const user = data.users[Math.floor(Math.random() * data.users.length)];
+  if (Math.random() < 0.8) {
+    const response = http.get(`${BASE_URL}/users/${user.id}`, { tags: { endpoint: 'GET /users/{id}' } });
+    check(response, { 'GET /users/{id} 200': (r) => r.status === 200 });
+  } else {
+    const credentials = JSON.stringify({ username: user.username, name: user.name });
+    const response = http.post(`${BASE_URL}/login`, credentials,
+      Object.assign({ tags: { endpoint: 'POST /login' } }, JSON_HEADERS));
+    check(response, { 'POST /login 200': (r) => r.status === 200 });
+  }
+}
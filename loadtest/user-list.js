@@ -0,0 +1,69 @@
+// k6 load test of GET /users with and without compression.
+//
+//   k6 run -e BASE_URL=http://localhost:8080 -e VUS=50 -e DURATION=30s user-list.js
+//
+// Both scenarios run one after the other against the same SEED_USERS users:
+// "identity" asks for the plain body, "gzip" for the compressed one. Compare
+// http_reqs (requests/s) and data_received (bytes on the wire) per scenario,
+// and run the script against the previous release for the numbers before.
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const SEED_USERS = parseInt(__ENV.SEED_USERS || '10000');
+const VUS = parseInt(__ENV.VUS || '50');
+const DURATION = __ENV.DURATION || '30s';
+const JSON_HEADERS = { headers: { 'Content-Type': 'application/json' } };
+
+export const options = {
+  scenarios: {
+    identity: {
+      executor: 'constant-vus',
+      vus: VUS,
+      duration: DURATION,
+      exec: 'identity',
+    },
+    gzip: {
+      executor: 'constant-vus',
+      vus: VUS,
+      duration: DURATION,
+      startTime: DURATION,
+      exec: 'gzip',
+    },
+  },
+  // per-scenario sub-metrics show up in the summary
+  thresholds: {
+    'http_reqs{scenario:identity}': ['count>=0'],
+    'http_reqs{scenario:gzip}': ['count>=0'],
+    'data_received{scenario:identity}': ['count>=0'],
+    'data_received{scenario:gzip}': ['count>=0'],
+    'http_req_duration{scenario:identity}': ['avg>=0'],
+    'http_req_duration{scenario:gzip}': ['avg>=0'],
+  },
+  summaryTrendStats: ['avg', 'p(50)', 'p(90)', 'p(99)', 'max'],
+};
+
+export function setup() {
+  const run = Date.now();
+  for (let offset = 0; offset < SEED_USERS; offset += 1000) {
+    const batch = [];
+    for (let i = offset; i < Math.min(offset + 1000, SEED_USERS); i++) {
+      batch.push({ username: `list-${run}-${i}`, name: `List User ${run} ${i}` });
+    }
+    const response = http.post(`${BASE_URL}/users/batch`, JSON.stringify(batch), JSON_HEADERS);
+    check(response, { 'seeded': (r) => r.status === 200 });
+  }
+}
+
+export function identity() {
+  const response = http.get(`${BASE_URL}/users`, { headers: { 'Accept-Encoding': 'identity' } });
+  check(response, { 'GET /users 200': (r) => r.status === 200 });
+}
+
+export function gzip() {
+  const response = http.get(`${BASE_URL}/users`, { headers: { 'Accept-Encoding': 'gzip' } });
+  check(response, {
+    'GET /users 200': (r) => r.status === 200,
+    'GET /users gzip': (r) => r.headers['Content-Encoding'] === 'gzip',
+  });
+}
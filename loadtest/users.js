@@ -0,0 +1,59 @@
+// k6 load test of the user endpoints: GET /users, GET /users/{id} and POST /login.
+//
+//   k6 run -e BASE_URL=http://localhost:8080 -e VUS=200 -e DURATION=60s users.js
+//
+// The setup seeds SEED_USERS users through POST /users/batch, so the test can
+// run against an empty in-memory database.
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const SEED_USERS = parseInt(__ENV.SEED_USERS || '1000');
+const JSON_HEADERS = { headers: { 'Content-Type': 'application/json' } };
+
+export const options = {
+  scenarios: {
+    users: {
+      executor: 'constant-vus',
+      vus: parseInt(__ENV.VUS || '200'),
+      duration: __ENV.DURATION || '60s',
+    },
+  },
+  summaryTrendStats: ['avg', 'p(50)', 'p(90)', 'p(99)', 'p(99.9)', 'max'],
+};
+
+export function setup() {
+  const run = Date.now();
+  const users = [];
+  for (let offset = 0; offset < SEED_USERS; offset += 1000) {
+    const batch = [];
+    for (let i = offset; i < Math.min(offset + 1000, SEED_USERS); i++) {
+      batch.push({ username: `load-${run}-${i}`, name: `Load User ${run} ${i}` });
+    }
+    const response = http.post(`${BASE_URL}/users/batch`, JSON.stringify(batch), JSON_HEADERS);
+    check(response, { 'seeded': (r) => r.status === 200 });
+    for (const item of response.json()) {
+      if (item.user) {
+        users.push({ id: item.user.id, username: item.user.username, name: item.user.name });
+      }
+    }
+  }
+  return { users };
+}
+
+export default function (data) {
+  const user = data.users[Math.floor(Math.random() * data.users.length)];
+  const dice = Math.random();
+  if (dice < 0.1) {
+    const response = http.get(`${BASE_URL}/users`, { tags: { endpoint: 'GET /users' } });
+    check(response, { 'GET /users 200': (r) => r.status === 200 });
+  } else if (dice < 0.8) {
+    const response = http.get(`${BASE_URL}/users/${user.id}`, { tags: { endpoint: 'GET /users/{id}' } });
+    check(response, { 'GET /users/{id} 200': (r) => r.status === 200 });
+  } else {
+    const credentials = JSON.stringify({ username: user.username, name: user.name });
+    const response = http.post(`${BASE_URL}/login`, credentials,
+      Object.assign({ tags: { endpoint: 'POST /login' } }, JSON_HEADERS));
+    check(response, { 'POST /login 200': (r) => r.status === 200 });
+  }
+}
@@ -0,0 +1,80 @@
+package ch.uzh.ifi.hase.soprafs23.controller;
+
+import ch.uzh.ifi.hase.soprafs23.Application;
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.servlet.Filter;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * UserControllerBenchmark
+ * Measures the full request path (filters, controller, service, repository
+ * and serialization) through MockMvc, i.e. without the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserControllerBenchmark {
+
+  private static final int USER_COUNT = 1000;
+
+  private ConfigurableApplicationContext context;
+
+  private MockMvc mockMvc;
+
+  private long userId;
+
+  @Setup
+  public void setup() {
+    context = new SpringApplicationBuilder(Application.class)
+        .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=WARN",
+            "users.ratelimit.enabled=false")
+        .run();
+    mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context)
+        .addFilters(context.getBeansOfType(Filter.class).values().toArray(new Filter[0]))
+        .build();
+
+    UserService userService = context.getBean(UserService.class);
+    for (int i = 0; i < USER_COUNT; i++) {
+      User user = new User();
+      user.setName("name" + i);
+      user.setUsername("username" + i);
+      userId = userService.createUser(user).getId();
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public MockHttpServletResponse getUser() throws Exception {
+    return mockMvc.perform(get("/users/" + userId)).andReturn().getResponse();
+  }
+
+  @Benchmark
+  public MockHttpServletResponse getUsers() throws Exception {
+    return mockMvc.perform(get("/users")).andReturn().getResponse();
+  }
+
+  @Benchmark
+  public MockHttpServletResponse login() throws Exception {
+    return mockMvc.perform(post("/login")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"username\": \"username0\", \"name\": \"name0\"}"))
+        .andReturn().getResponse();
+  }
+}
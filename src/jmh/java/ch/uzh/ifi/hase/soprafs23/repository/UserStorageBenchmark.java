@@ -0,0 +1,143 @@
+package ch.uzh.ifi.hase.soprafs23.repository;
+
+import ch.uzh.ifi.hase.soprafs23.Application;
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserStorageBenchmark
+ * Compares the in-memory database with the persistent profile (memory-mapped
+ * H2 file): the time to start the application on a database that already
+ * holds the users, and the latency of the indexed lookups. An in-memory
+ * database is empty after every start, so its start time is the baseline
+ * the persistent profile should stay close to.
+ */
+public class UserStorageBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Storage {
+
+    @Param({ "mem", "persistent" })
+    String storage;
+
+    @Param({ "100000" })
+    int userCount;
+
+    Path directory;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+      directory = Files.createTempDirectory("users");
+      if (storage.equals("persistent")) {
+        try (ConfigurableApplicationContext context = start(this)) {
+          createUsers(context, userCount);
+        }
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      FileSystemUtils.deleteRecursively(directory);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class RunningApplication {
+
+    ConfigurableApplicationContext context;
+
+    UserRepository userRepository;
+
+    @Setup(Level.Trial)
+    public void setup(Storage storage) {
+      context = start(storage);
+      if (storage.storage.equals("mem")) {
+        createUsers(context, storage.userCount);
+      }
+      userRepository = context.getBean(UserRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      context.close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class StartedApplication {
+
+    ConfigurableApplicationContext context;
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+      if (context != null) {
+        context.close();
+      }
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 1)
+  @Measurement(iterations = 5)
+  public ConfigurableApplicationContext coldStart(Storage storage, StartedApplication application) {
+    application.context = start(storage);
+    return application.context;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public User findByUsername(Storage storage, RunningApplication application) {
+    return application.userRepository.findByUsername("username" + ThreadLocalRandom.current().nextInt(storage.userCount));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public User findByName(Storage storage, RunningApplication application) {
+    return application.userRepository.findByName("name" + ThreadLocalRandom.current().nextInt(storage.userCount));
+  }
+
+  private static ConfigurableApplicationContext start(Storage storage) {
+    SpringApplicationBuilder builder = new SpringApplicationBuilder(Application.class)
+        .web(WebApplicationType.NONE)
+        .properties("spring.main.banner-mode=off", "logging.level.root=WARN");
+    if (storage.storage.equals("persistent")) {
+      builder.profiles("persistent").properties("users.storage.path=" + storage.directory.resolve("users"));
+    }
+    return builder.run();
+  }
+
+  private static void createUsers(ConfigurableApplicationContext context, int userCount) {
+    UserService userService = context.getBean(UserService.class);
+    List<User> users = new ArrayList<>(UserService.MAX_BATCH_SIZE);
+    for (int i = 0; i < userCount; i++) {
+      User user = new User();
+      user.setName("name" + i);
+      user.setUsername("username" + i);
+      users.add(user);
+      if (users.size() == UserService.MAX_BATCH_SIZE) {
+        userService.createUsers(users);
+        users = new ArrayList<>(UserService.MAX_BATCH_SIZE);
+      }
+    }
+    if (!users.isEmpty()) {
+      userService.createUsers(users);
+    }
+  }
+}
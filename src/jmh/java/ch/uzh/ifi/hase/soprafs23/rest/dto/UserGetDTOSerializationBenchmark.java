@@ -0,0 +1,55 @@
+package ch.uzh.ifi.hase.soprafs23.rest.dto;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.rest.mapper.UserGetDTOJsonWriter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserGetDTOSerializationBenchmark
+ * Measures the serialization of user lists as returned by GET /users, with
+ * the ObjectMapper configured the way Spring Boot configures it and with the
+ * UserGetDTOJsonWriter. Run with -prof gc to compare the allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserGetDTOSerializationBenchmark {
+
+  @Param({ "1", "100", "10000" })
+  private int userCount;
+
+  private ObjectMapper objectMapper;
+
+  private List<UserGetDTO> users;
+
+  @Setup
+  public void setup() {
+    objectMapper = Jackson2ObjectMapperBuilder.json()
+        .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+        .build();
+    users = new ArrayList<>(userCount);
+    for (int i = 0; i < userCount; i++) {
+      users.add(new UserGetDTO((long) i, "Firstname Lastname " + i, "username" + i,
+          i % 2 == 0 ? UserStatus.ONLINE : UserStatus.OFFLINE, LocalDate.of(2023, 3, 1), LocalDate.of(1999, 2, 3)));
+    }
+  }
+
+  @Benchmark
+  public byte[] serializeUserList() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(users);
+  }
+
+  @Benchmark
+  public byte[] writeUserList() {
+    return UserGetDTOJsonWriter.toJson(users);
+  }
+}
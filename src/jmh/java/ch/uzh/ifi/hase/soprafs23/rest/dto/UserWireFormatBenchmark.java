@@ -0,0 +1,89 @@
+package ch.uzh.ifi.hase.soprafs23.rest.dto;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserWireFormatBenchmark
+ * Measures the encoding and decoding time of one UserGetDTO and one
+ * UserPostDTO in each wire format of the user endpoints, with the mapper
+ * settings of Spring Boot. The payload size per user and format is printed
+ * once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UserWireFormatBenchmark {
+
+  @Param({ "json", "cbor", "smile" })
+  private String format;
+
+  private ObjectMapper objectMapper;
+
+  private UserGetDTO userGetDTO;
+
+  private UserPostDTO userPostDTO;
+
+  private byte[] encodedUserGetDTO;
+
+  private byte[] encodedUserPostDTO;
+
+  @Setup
+  public void setup() throws IOException {
+    objectMapper = Jackson2ObjectMapperBuilder.json()
+        .factory(factory(format))
+        .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+        .build();
+    userGetDTO = new UserGetDTO(123456L, "Firstname Lastname", "firstname.lastname", UserStatus.ONLINE,
+        LocalDate.of(2023, 3, 1), LocalDate.of(1999, 2, 3));
+    userPostDTO = new UserPostDTO();
+    userPostDTO.setName("Firstname Lastname");
+    userPostDTO.setUsername("firstname.lastname");
+    userPostDTO.setBirthDate("1999-02-03");
+    encodedUserGetDTO = objectMapper.writeValueAsBytes(userGetDTO);
+    encodedUserPostDTO = objectMapper.writeValueAsBytes(userPostDTO);
+    System.out.printf("%n%s payload: UserGetDTO %d bytes, UserPostDTO %d bytes%n", format, encodedUserGetDTO.length,
+        encodedUserPostDTO.length);
+  }
+
+  @Benchmark
+  public byte[] encodeUserGetDTO() throws IOException {
+    return objectMapper.writeValueAsBytes(userGetDTO);
+  }
+
+  @Benchmark
+  public UserGetDTO decodeUserGetDTO() throws IOException {
+    return objectMapper.readValue(encodedUserGetDTO, UserGetDTO.class);
+  }
+
+  @Benchmark
+  public byte[] encodeUserPostDTO() throws IOException {
+    return objectMapper.writeValueAsBytes(userPostDTO);
+  }
+
+  @Benchmark
+  public UserPostDTO decodeUserPostDTO() throws IOException {
+    return objectMapper.readValue(encodedUserPostDTO, UserPostDTO.class);
+  }
+
+  private static JsonFactory factory(String format) {
+    switch (format) {
+      case "cbor":
+        return new CBORFactory();
+      case "smile":
+        return new SmileFactory();
+      default:
+        return new JsonFactory();
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package ch.uzh.ifi.hase.soprafs23.rest.mapper;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DTOMapperBenchmark
+ * Measures the MapStruct conversions between the User entity and its DTOs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DTOMapperBenchmark {
+
+  private User user;
+
+  private UserPostDTO userPostDTO;
+
+  @Setup
+  public void setup() {
+    user = new User();
+    user.setId(1L);
+    user.setName("Firstname Lastname");
+    user.setUsername("firstname@lastname");
+    user.setToken("token");
+    user.setStatus(UserStatus.ONLINE);
+    user.setCreationDate(LocalDate.of(2023, 3, 1));
+    user.setBirthDate(LocalDate.of(1999, 2, 3));
+
+    userPostDTO = new UserPostDTO();
+    userPostDTO.setName("Firstname Lastname");
+    userPostDTO.setUsername("firstname@lastname");
+  }
+
+  @Benchmark
+  public UserGetDTO convertEntityToUserGetDTO() {
+    return DTOMapper.INSTANCE.convertEntityToUserGetDTO(user);
+  }
+
+  @Benchmark
+  public User convertUserPostDTOtoEntity() {
+    return DTOMapper.INSTANCE.convertUserPostDTOtoEntity(userPostDTO);
+  }
+}
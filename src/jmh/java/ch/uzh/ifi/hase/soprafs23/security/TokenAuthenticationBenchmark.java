@@ -0,0 +1,58 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import ch.uzh.ifi.hase.soprafs23.service.UserTokenIndex;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TokenAuthenticationBenchmark
+ * Measures how long it takes to identify the caller of a request: the lookup
+ * in the UserTokenIndex alone and the whole TokenAuthenticationFilter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TokenAuthenticationBenchmark {
+
+  @Param({ "1000", "1000000" })
+  private int userCount;
+
+  private UserTokenIndex userTokenIndex;
+
+  private TokenAuthenticationFilter filter;
+
+  private String[] tokens;
+
+  @Setup
+  public void setup() {
+    userTokenIndex = new UserTokenIndex(null, true);
+    tokens = new String[userCount];
+    for (int i = 0; i < userCount; i++) {
+      tokens[i] = UUID.randomUUID().toString();
+      userTokenIndex.put(tokens[i], i);
+    }
+    filter = new TokenAuthenticationFilter(userTokenIndex, true);
+  }
+
+  @Benchmark
+  public Long lookUpToken() {
+    return userTokenIndex.getUserId(tokens[ThreadLocalRandom.current().nextInt(userCount)]);
+  }
+
+  @Benchmark
+  public Object authenticateRequest() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users/1");
+    request.setServletPath("/users/1");
+    request.addHeader(HttpHeaders.AUTHORIZATION,
+        TokenAuthenticationFilter.BEARER_PREFIX + tokens[ThreadLocalRandom.current().nextInt(userCount)]);
+    filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+    return request.getAttribute(TokenAuthenticationFilter.AUTHENTICATED_USER_ID);
+  }
+}
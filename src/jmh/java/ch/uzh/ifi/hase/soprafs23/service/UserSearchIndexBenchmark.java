@@ -0,0 +1,100 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserSearchIndexBenchmark
+ * Measures the time to build the UserSearchIndex, its heap footprint
+ * (printed once per trial, as the difference of the used heap after a full
+ * GC) and the latency of prefix searches.
+ */
+public class UserSearchIndexBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Users {
+
+    @Param({ "1000000" })
+    int userCount;
+
+    String[] usernames;
+
+    String[] names;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      usernames = new String[userCount];
+      names = new String[userCount];
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      for (int i = 0; i < userCount; i++) {
+        usernames[i] = randomWord(random, 6) + i;
+        names[i] = randomWord(random, 7) + " " + randomWord(random, 9);
+      }
+    }
+
+    UserSearchIndex build() {
+      UserSearchIndex userSearchIndex = new UserSearchIndex();
+      for (int i = 0; i < userCount; i++) {
+        userSearchIndex.add(i, usernames[i], names[i]);
+      }
+      return userSearchIndex;
+    }
+
+    private static String randomWord(ThreadLocalRandom random, int length) {
+      char[] word = new char[length];
+      for (int i = 0; i < length; i++) {
+        word[i] = (char) ('a' + random.nextInt(26));
+      }
+      return new String(word);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Index {
+
+    UserSearchIndex userSearchIndex;
+
+    @Setup(Level.Trial)
+    public void setup(Users users) {
+      long before = usedHeap();
+      userSearchIndex = users.build();
+      long after = usedHeap();
+      System.out.printf("%n%d users, %d terms, ~%d MB retained by the search index%n",
+          users.userCount, userSearchIndex.size(), (after - before) / (1024 * 1024));
+    }
+
+    private static long usedHeap() {
+      Runtime runtime = Runtime.getRuntime();
+      System.gc();
+      return runtime.totalMemory() - runtime.freeMemory();
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 1)
+  @Measurement(iterations = 5)
+  public UserSearchIndex build(Users users) {
+    return users.build();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public List<Long> searchByUsernamePrefix(Users users, Index index) {
+    String username = users.usernames[ThreadLocalRandom.current().nextInt(users.userCount)];
+    return index.userSearchIndex.search(username.substring(0, 3), 10);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public List<Long> searchByNameWordPrefix(Users users, Index index) {
+    String name = users.names[ThreadLocalRandom.current().nextInt(users.userCount)];
+    return index.userSearchIndex.search(name.substring(name.indexOf(' ') + 1, name.indexOf(' ') + 4), 10);
+  }
+}
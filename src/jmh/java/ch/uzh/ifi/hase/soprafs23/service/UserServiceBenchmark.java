@@ -0,0 +1,67 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.Application;
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UserServiceBenchmark
+ * Measures createUser and logInUser against the embedded H2 database, with the
+ * application context started without a web server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserServiceBenchmark {
+
+  private final AtomicLong userCount = new AtomicLong();
+
+  private ConfigurableApplicationContext context;
+
+  private UserService userService;
+
+  private User credentials;
+
+  @Setup
+  public void setup() {
+    context = new SpringApplicationBuilder(Application.class)
+        .web(WebApplicationType.NONE)
+        .properties("spring.main.banner-mode=off", "logging.level.root=WARN")
+        .run();
+    userService = context.getBean(UserService.class);
+
+    User user = new User();
+    user.setName("Benchmark User");
+    user.setUsername("benchmark");
+    userService.createUser(user);
+
+    credentials = new User();
+    credentials.setName("Benchmark User");
+    credentials.setUsername("benchmark");
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public User createUser() {
+    long id = userCount.incrementAndGet();
+    User user = new User();
+    user.setName("name" + id);
+    user.setUsername("username" + id);
+    return userService.createUser(user);
+  }
+
+  @Benchmark
+  public User logInUser() {
+    return userService.logInUser(credentials);
+  }
+}
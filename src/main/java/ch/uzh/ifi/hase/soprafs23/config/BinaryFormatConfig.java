@@ -0,0 +1,32 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Binary Format Configuration
+ * Request and response bodies can be CBOR (application/cbor) or Smile
+ * (application/x-jackson-smile) instead of JSON, selected by the Content-Type
+ * and Accept headers. The converters use the ObjectMapper settings of
+ * Spring Boot (e.g. dates as ISO strings), so the binary representations
+ * carry the same fields and values as the JSON ones. They replace the
+ * defaults of Spring MVC, JSON stays the first choice.
+ */
+@Configuration
+public class BinaryFormatConfig {
+
+  @Bean
+  public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+    return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+  }
+
+  @Bean
+  public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+    return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+  }
+}
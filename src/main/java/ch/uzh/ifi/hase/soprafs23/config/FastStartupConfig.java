@@ -0,0 +1,25 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import ch.uzh.ifi.hase.soprafs23.service.UserIndexInitializer;
+import ch.uzh.ifi.hase.soprafs23.service.UserPresence;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Fast Startup Configuration (--spring.profiles.active=fast)
+ * The fast profile creates beans lazily. The scheduled presence tasks and the
+ * warm-up of the in-memory user indexes only run for beans that exist, so
+ * these are still created at startup.
+ */
+@Configuration
+@Profile("fast")
+public class FastStartupConfig {
+
+  // static: the filter is looked up before the other beans are created
+  @Bean
+  public static LazyInitializationExcludeFilter eagerUserIndexes() {
+    return LazyInitializationExcludeFilter.forBeanTypes(UserIndexInitializer.class, UserPresence.class);
+  }
+}
@@ -0,0 +1,39 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Flush Count Filter
+ * Records how often Hibernate flushed while a request was served. More than
+ * one flush per request usually means queries that trigger auto-flushes.
+ */
+class FlushCountFilter extends OncePerRequestFilter {
+
+  private final DistributionSummary flushesPerRequest;
+
+  FlushCountFilter(MeterRegistry meterRegistry) {
+    this.flushesPerRequest = DistributionSummary.builder("users.request.flushes")
+        .description("Hibernate flushes per request")
+        .serviceLevelObjectives(1, 2, 5, 10)
+        .register(meterRegistry);
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    FlushCountingInterceptor.begin();
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      flushesPerRequest.record(FlushCountingInterceptor.end());
+    }
+  }
+}
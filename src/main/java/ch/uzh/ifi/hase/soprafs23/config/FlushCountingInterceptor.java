@@ -0,0 +1,39 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import org.hibernate.EmptyInterceptor;
+
+import java.util.Iterator;
+
+/**
+ * Flush Counting Interceptor
+ * Counts the Hibernate flushes of the current thread between begin() and
+ * end(). Flushes outside of such a span (scheduled jobs) are not counted.
+ */
+class FlushCountingInterceptor extends EmptyInterceptor {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final ThreadLocal<int[]> FLUSH_COUNT = new ThreadLocal<>();
+
+  static void begin() {
+    FLUSH_COUNT.set(new int[1]);
+  }
+
+  /**
+   * @return the number of flushes since begin()
+   */
+  static int end() {
+    int[] flushCount = FLUSH_COUNT.get();
+    FLUSH_COUNT.remove();
+    return flushCount == null ? 0 : flushCount[0];
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes") // the signature of the Interceptor
+  public void postFlush(Iterator entities) {
+    int[] flushCount = FLUSH_COUNT.get();
+    if (flushCount != null) {
+      flushCount[0]++;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Metrics Configuration
+ * Spring Boot already times every request (http.server.requests) and every
+ * repository query (spring.data.repository.invocations). This adds timers
+ * for the methods of classes annotated with @Timed (the UserService) and
+ * the number of Hibernate flushes per request (users.request.flushes).
+ */
+@Configuration
+public class MetricsConfig {
+
+  @Bean
+  public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+    return new TimedAspect(meterRegistry);
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer flushCountingHibernatePropertiesCustomizer() {
+    return hibernateProperties -> hibernateProperties.put(AvailableSettings.INTERCEPTOR, new FlushCountingInterceptor());
+  }
+
+  @Bean
+  public FlushCountFilter flushCountFilter(MeterRegistry meterRegistry) {
+    return new FlushCountFilter(meterRegistry);
+  }
+}
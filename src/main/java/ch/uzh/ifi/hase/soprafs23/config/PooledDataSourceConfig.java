@@ -0,0 +1,67 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Pooled DataSource Configuration (--spring.profiles.active=pool)
+ * Replaces the single default connection pool with two Hikari pools that are
+ * sized and tuned in application-pool.properties: read-only transactions
+ * (the read methods of the UserService) are routed to the read pool, all
+ * other statements to the write pool. Reads therefore cannot starve writes of
+ * connections, and the read pool can be pointed at a replica. Both pools
+ * report their active, idle and pending connections and the acquire time as
+ * hikaricp.* metrics.
+ */
+@Configuration
+@Profile("pool")
+public class PooledDataSourceConfig {
+
+  @Bean
+  @ConfigurationProperties("users.datasource.write.hikari")
+  public HikariDataSource writeDataSource(DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  @Bean
+  @ConfigurationProperties("users.datasource.read.hikari")
+  public HikariDataSource readDataSource(DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  /**
+   * The routing happens when the first statement runs: the transaction is
+   * only marked read-only after the transaction manager has asked for its
+   * connection, so the connection has to be fetched lazily.
+   */
+  @Bean
+  @Primary
+  public DataSource dataSource(@Qualifier("writeDataSource") DataSource writeDataSource,
+      @Qualifier("readDataSource") DataSource readDataSource) {
+    ReadOnlyRoutingDataSource routingDataSource = new ReadOnlyRoutingDataSource();
+    routingDataSource.setTargetDataSources(Map.<Object, Object>of(false, writeDataSource, true, readDataSource));
+    routingDataSource.setDefaultTargetDataSource(writeDataSource);
+    routingDataSource.afterPropertiesSet();
+    return new LazyConnectionDataSourceProxy(routingDataSource);
+  }
+
+  static class ReadOnlyRoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+      return TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import ch.uzh.ifi.hase.soprafs23.controller.ReactiveUserHandler;
+import com.zaxxer.hikari.HikariDataSource;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.reactive.CorsWebFilter;
+import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+/**
+ * Reactive Configuration (--spring.profiles.active=reactive)
+ * Serves the user API with WebFlux on Netty instead of the servlet stack, see
+ * application-reactive.properties. The JPA side stays in place: it creates
+ * the schema and keeps the in-memory indexes and the presence tracking
+ * running. Both transaction managers exist, the JPA one is the primary one
+ * used by @Transactional, the reactive code uses the TransactionalOperator.
+ */
+@Configuration
+@Profile("reactive")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReactiveConfig {
+
+  /**
+   * Spring Boot backs off from its DataSource (and with it JPA) as soon as
+   * an R2DBC ConnectionFactory exists, so the JDBC side defines its own.
+   */
+  @Bean
+  @Primary
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource dataSource(DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  @Bean
+  public RouterFunction<ServerResponse> userRoutes(ReactiveUserHandler userHandler) {
+    return RouterFunctions.route()
+        .GET("/users", userHandler::getUsers)
+        .GET("/users/{userId}", userHandler::getUser)
+        .POST("/users", userHandler::createUser)
+        .PUT("/users/{userId}", userHandler::editUser)
+        .POST("/login", userHandler::loginUser)
+        .PUT("/logout", userHandler::logoutUser)
+        .build();
+  }
+
+  @Bean
+  public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+    return new NettyReactiveWebServerFactory();
+  }
+
+  @Bean
+  @Primary
+  public JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+    return new JpaTransactionManager(entityManagerFactory);
+  }
+
+  @Bean
+  public R2dbcTransactionManager reactiveTransactionManager(ConnectionFactory connectionFactory) {
+    return new R2dbcTransactionManager(connectionFactory);
+  }
+
+  @Bean
+  public CorsWebFilter corsWebFilter() {
+    CorsConfiguration configuration = new CorsConfiguration();
+    configuration.addAllowedOrigin("*");
+    configuration.addAllowedMethod("*");
+    configuration.addAllowedHeader("*");
+    configuration.setExposedHeaders(List.of(HttpHeaders.AUTHORIZATION, HttpHeaders.LINK, HttpHeaders.ETAG));
+    UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+    source.registerCorsConfiguration("/**", configuration);
+    return new CorsWebFilter(source);
+  }
+}
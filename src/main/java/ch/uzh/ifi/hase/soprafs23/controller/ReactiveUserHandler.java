@@ -0,0 +1,134 @@
+package ch.uzh.ifi.hase.soprafs23.controller;
+
+import ch.uzh.ifi.hase.soprafs23.entity.UserRecord;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs23.security.TokenAuthenticationFilter;
+import ch.uzh.ifi.hase.soprafs23.service.ReactiveUserService;
+import ch.uzh.ifi.hase.soprafs23.service.UserService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive User Handler
+ * Serves /users, /users/{userId}, /login and /logout with the same
+ * representations, headers and status codes as the UserController, but on
+ * WebFlux: a request holds no thread while it waits for the database. The
+ * routes are declared in ReactiveConfig (reactive profile). The session
+ * token is resolved with a query instead of the in-memory token index.
+ */
+@Component
+@Profile("reactive")
+public class ReactiveUserHandler {
+
+  private final ReactiveUserService userService;
+
+  private final boolean authenticationRequired;
+
+  public ReactiveUserHandler(ReactiveUserService userService,
+      @Value("${users.auth.required:false}") boolean authenticationRequired) {
+    this.userService = userService;
+    this.authenticationRequired = authenticationRequired;
+  }
+
+  public Mono<ServerResponse> getUsers(ServerRequest request) {
+    return ServerResponse.ok()
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(userService.getUsers().map(DTOMapper.INSTANCE::convertRecordToUserGetDTO), UserGetDTO.class);
+  }
+
+  public Mono<ServerResponse> getUser(ServerRequest request) {
+    long userId = getUserId(request);
+    return userService.getUser(userId)
+        .flatMap(user -> {
+          String eTag = userId + "-" + user.getVersion() + "-" + user.getStatus();
+          // If-None-Match: 304 without body if the client has the current version
+          return request.checkNotModified(eTag)
+              .switchIfEmpty(Mono.defer(() -> ServerResponse.ok()
+                  .eTag(eTag)
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .bodyValue(DTOMapper.INSTANCE.convertRecordToUserGetDTO(user))));
+        });
+  }
+
+  public Mono<ServerResponse> createUser(ServerRequest request) {
+    return request.bodyToMono(UserPostDTO.class)
+        .map(DTOMapper.INSTANCE::convertUserPostDTOtoRecord)
+        .flatMap(userService::createUser)
+        // the session token is handed out in a header, never in the body
+        .flatMap(user -> ServerResponse.status(HttpStatus.CREATED)
+            .header(HttpHeaders.AUTHORIZATION, TokenAuthenticationFilter.BEARER_PREFIX + user.getToken())
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(DTOMapper.INSTANCE.convertRecordToUserGetDTO(user)));
+  }
+
+  public Mono<ServerResponse> editUser(ServerRequest request) {
+    long userId = getUserId(request);
+    // If-Match: only edit the version of the user the client has seen
+    String ifMatch = request.headers().firstHeader(HttpHeaders.IF_MATCH);
+    Long expectedVersion = null;
+    if (ifMatch != null && !ifMatch.trim().equals("*")) {
+      expectedVersion = UserService.getVersionFromETag(userId, ifMatch);
+      if (expectedVersion == null) {
+        return Mono.error(new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+            "The user has been changed in the meantime!"));
+      }
+    }
+    Long version = expectedVersion;
+    // an authenticated caller may only edit its own profile
+    return authenticate(request)
+        .flatMap(callerId -> callerId.equals(userId) ? Mono.just(callerId)
+            : Mono.error(new ResponseStatusException(HttpStatus.FORBIDDEN, "You can only edit your own profile!")))
+        .then(request.bodyToMono(UserPostDTO.class))
+        .flatMap(userChanges -> userService.editUser(userId, userChanges, version))
+        .then(ServerResponse.noContent().build());
+  }
+
+  public Mono<ServerResponse> loginUser(ServerRequest request) {
+    return request.bodyToMono(UserPostDTO.class)
+        .map(DTOMapper.INSTANCE::convertUserPostDTOtoRecord)
+        .flatMap(userService::logInUser)
+        .flatMap(user -> ServerResponse.ok()
+            .header(HttpHeaders.AUTHORIZATION, TokenAuthenticationFilter.BEARER_PREFIX + user.getToken())
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(DTOMapper.INSTANCE.convertRecordToUserGetDTO(user)));
+  }
+
+  public Mono<ServerResponse> logoutUser(ServerRequest request) {
+    return request.bodyToMono(Long.class)
+        .flatMap(userService::logoutUser)
+        .then(ServerResponse.noContent().build());
+  }
+
+  /**
+   * @return the id of the user identified by the session token, empty for a
+   *         request without token (see TokenAuthenticationFilter)
+   */
+  private Mono<Long> authenticate(ServerRequest request) {
+    String authorization = request.headers().firstHeader(HttpHeaders.AUTHORIZATION);
+    if (authorization == null || !authorization.startsWith(TokenAuthenticationFilter.BEARER_PREFIX)) {
+      return authenticationRequired
+          ? Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "A token is required!"))
+          : Mono.empty();
+    }
+    return userService.getUserIdByToken(authorization.substring(TokenAuthenticationFilter.BEARER_PREFIX.length()))
+        .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "The token is invalid!")));
+  }
+
+  private static long getUserId(ServerRequest request) {
+    try {
+      return Long.parseLong(request.pathVariable("userId"));
+    } catch (NumberFormatException e) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "This user does not exist!");
+    }
+  }
+}
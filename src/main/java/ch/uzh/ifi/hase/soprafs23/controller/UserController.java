@@ -1,15 +1,44 @@
 package ch.uzh.ifi.hase.soprafs23.controller;
 
 import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserAvailabilityGetDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserBatchItemGetDTO;
 import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
 import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
 import ch.uzh.ifi.hase.soprafs23.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs23.security.TokenAuthenticationFilter;
+import ch.uzh.ifi.hase.soprafs23.service.UserEventBroadcaster;
 import ch.uzh.ifi.hase.soprafs23.service.UserService;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * User Controller
@@ -17,75 +46,270 @@ import java.util.List;
  * the user.
  * The controller will receive the request and delegate the execution to the
  * UserService and finally return the result.
+ * The reactive profile serves the user API with the ReactiveUserHandler
+ * instead.
  */
 @RestController
+@Profile("!reactive")
 public class UserController {
 
+  public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+  public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+  // the gzip-compressed representation needs an ETag of its own
+  private static final String GZIP_ETAG_SUFFIX = "-gzip";
+
+  // binary representations of the users for service clients, chosen by the Accept header; each needs an ETag of
+  // its own as well (see UserService.getVersionFromETag)
+  private static final Map<MediaType, JsonFactory> BINARY_FORMATS = Map.of(
+      MediaType.APPLICATION_CBOR, new CBORFactory(),
+      APPLICATION_SMILE, new SmileFactory());
+
+  // how often an edit is applied again after losing against a concurrent edit
+  static final int MAX_EDIT_ATTEMPTS = 3;
+
+  private final Logger log = LoggerFactory.getLogger(UserController.class);
+
   private final UserService userService;
 
-  UserController(UserService userService) {
+  private final ObjectMapper objectMapper;
+
+  private final UserEventBroadcaster userEventBroadcaster;
+
+  private final UserResponseCache userResponseCache;
+
+  UserController(UserService userService, ObjectMapper objectMapper, UserEventBroadcaster userEventBroadcaster,
+      @Value("${users.response-cache.maximum-size:10000}") long responseCacheSize) {
     this.userService = userService;
+    this.objectMapper = objectMapper;
+    this.userEventBroadcaster = userEventBroadcaster;
+    this.userResponseCache = new UserResponseCache(responseCacheSize);
   }
 
   @GetMapping("/users")
-  @ResponseStatus(HttpStatus.OK)
   @ResponseBody
-  public List<UserGetDTO> getAllUsers() {
-    // fetch all users in the internal representation
-    List<User> users = userService.getUsers();
-    List<UserGetDTO> userGetDTOs = new ArrayList<>();
+  public ResponseEntity<byte[]> getAllUsers(WebRequest request) {
+    // JSON unless the client prefers CBOR or Smile, these are not compressed
+    MediaType binaryType = getBinaryMediaType(request.getHeader(HttpHeaders.ACCEPT));
+    boolean gzip = binaryType == null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    // nothing changed since the client's copy -> 304 without reading or serializing the users
+    String eTag = userService.getUsersETag();
+    String representationETag = binaryType != null ? eTag + getETagSuffix(binaryType)
+        : gzip ? eTag + GZIP_ETAG_SUFFIX : eTag;
+    if (request.checkNotModified(representationETag)) {
+      return null;
+    }
+    // the body is only read and serialized again once a user has changed
+    UserResponseCache.Body body = userResponseCache.getUsers(eTag, userService::getUserGetDTOs);
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+        .eTag(representationETag)
+        .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+    if (binaryType != null) {
+      return response.contentType(binaryType).body(body.getBinary(BINARY_FORMATS.get(binaryType)));
+    }
+    response.contentType(MediaType.APPLICATION_JSON);
+    if (gzip) {
+      return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.getGzip());
+    }
+    return response.body(body.getJson());
+  }
+
+  @GetMapping(value = "/users", params = "limit")
+  @ResponseBody
+  public ResponseEntity<List<UserGetDTO>> getUsersPage(@RequestParam int limit,
+      @RequestParam(defaultValue = "0") long after, WebRequest request) {
+    String eTag = userService.getUsersETag();
+    if (request.checkNotModified(eTag)) {
+      return null;
+    }
+    // fetch one page of users after the given cursor
+    List<UserGetDTO> userGetDTOs = userService.getUserGetDTOs(after, limit);
 
-    // convert each user to the API representation
-    for (User user : users) {
-      userGetDTOs.add(DTOMapper.INSTANCE.convertEntityToUserGetDTO(user));
+    // a full page means there might be more -> hand out the cursor of the next one
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(eTag);
+    if (userGetDTOs.size() == limit) {
+      long nextCursor = userGetDTOs.get(userGetDTOs.size() - 1).getId();
+      response.header(HttpHeaders.LINK, String.format("</users?limit=%d&after=%d>; rel=\"next\"", limit, nextCursor));
     }
-    return userGetDTOs;
+    return response.body(userGetDTOs);
   }
 
-  @GetMapping("/users/{userId}")
+  @GetMapping(value = "/users", produces = APPLICATION_NDJSON_VALUE)
+  @ResponseBody
+  public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+    // every user is written as one JSON line as soon as it has been read
+    StreamingResponseBody body = outputStream -> {
+      ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+      JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+      generator.setRootValueSeparator(null);
+      userService.streamUserGetDTOs(user -> {
+        try {
+          writer.writeValue(generator, user);
+          generator.writeRaw('\n');
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      generator.flush();
+    };
+    return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
+  }
+
+  @GetMapping("/users/online")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public List<UserGetDTO> getOnlineUsers() {
+    // who is online is answered from memory, not by scanning the table
+    return userService.getOnlineUserGetDTOs();
+  }
+
+  @GetMapping("/users/search")
   @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public List<UserGetDTO> searchUsers(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+    // matches by prefix of the username or name, answered from an in-memory index
+    return userService.searchUserGetDTOs(q, limit);
+  }
+
+  @GetMapping("/users/availability")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public UserAvailabilityGetDTO getUsernameAvailability(@RequestParam String username) {
+    // as-you-type check of the signup form, mostly answered from memory
+    UserAvailabilityGetDTO availability = new UserAvailabilityGetDTO();
+    availability.setUsername(username);
+    availability.setAvailable(userService.isUsernameAvailable(username));
+    return availability;
+  }
+
+  @GetMapping(value = "/users/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  @ResponseBody
+  public SseEmitter subscribeToUserEvents() {
+    // pushes every create, edit, login and logout instead of being polled
+    return userEventBroadcaster.subscribe();
+  }
+
+  @GetMapping("/users/{userId}")
   @ResponseBody 
-  public UserGetDTO getUser(@PathVariable Long userId) {
-    // fetch user in the internal representation
-    User user = userService.getUser(userId);
-    // convert user to the API representation
-    return DTOMapper.INSTANCE.convertEntityToUserGetDTO(user);
+  public ResponseEntity<byte[]> getUser(@PathVariable Long userId, WebRequest request) {
+    MediaType binaryType = getBinaryMediaType(request.getHeader(HttpHeaders.ACCEPT));
+    // the client's copy is still current -> 304 without mapping or serializing the user
+    String eTag = userService.getUserETag(userId);
+    String representationETag = binaryType != null ? eTag + getETagSuffix(binaryType) : eTag;
+    if (request.checkNotModified(representationETag)) {
+      return null;
+    }
+    // fetch the user in its API representation, serialized once per version
+    UserResponseCache.Body body = userResponseCache.getUser(userId, eTag, () -> userService.getUserGetDTO(userId));
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(representationETag).varyBy(HttpHeaders.ACCEPT);
+    if (binaryType != null) {
+      return response.contentType(binaryType).body(body.getBinary(BINARY_FORMATS.get(binaryType)));
+    }
+    return response.contentType(MediaType.APPLICATION_JSON).body(body.getJson());
   }
 
   @PutMapping("/users/{userId}")
   @ResponseStatus(HttpStatus.NO_CONTENT)
   @ResponseBody 
-  public void editUser(@PathVariable Long userId, @RequestBody UserPostDTO userChanges){
-    // fetch user in the internal representation
-    User user = userService.getUser(userId);
-    // save the users changes
-    userService.editUser(user, userChanges);
+  public void editUser(@PathVariable Long userId, @RequestBody UserPostDTO userChanges,
+      @RequestAttribute(name = TokenAuthenticationFilter.AUTHENTICATED_USER_ID, required = false) Long callerId,
+      @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+    // an authenticated caller may only edit its own profile
+    if (callerId != null && !callerId.equals(userId)) {
+      throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You can only edit your own profile!");
+    }
+    // If-Match: only edit the version of the user the client has seen
+    Long expectedVersion = null;
+    if (ifMatch != null && !ifMatch.trim().equals("*")) {
+      expectedVersion = UserService.getVersionFromETag(userId, ifMatch);
+      if (expectedVersion == null) {
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "The user has been changed in the meantime!");
+      }
+    }
+    for (int attempt = 1; ; attempt++) {
+      try {
+        // fetch user in the internal representation and save the users changes
+        userService.editUser(userService.getUser(userId), userChanges, expectedVersion);
+        return;
+      }
+      catch (ConcurrencyFailureException e) {
+        // another edit came first (or held the row too long) -> apply the
+        // changes to the new version
+        if (attempt == MAX_EDIT_ATTEMPTS) {
+          throw new ResponseStatusException(HttpStatus.CONFLICT, "The user is being changed concurrently, please try again!", e);
+        }
+      }
+    }
+  }
+
+  @PutMapping("/users/{userId}/heartbeat")
+  @ResponseStatus(HttpStatus.NO_CONTENT)
+  @ResponseBody
+  public void heartbeat(@PathVariable Long userId,
+      @RequestAttribute(name = TokenAuthenticationFilter.AUTHENTICATED_USER_ID, required = false) Long callerId) {
+    if (callerId != null && !callerId.equals(userId)) {
+      throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You can only keep your own session alive!");
+    }
+    // keep the session of the user alive
+    userService.heartbeat(userId);
   }
 
   @PostMapping("/users")
   @ResponseStatus(HttpStatus.CREATED)
   @ResponseBody
-  public UserGetDTO createUser(@RequestBody UserPostDTO userPostDTO) {
+  public UserGetDTO createUser(@RequestBody UserPostDTO userPostDTO, HttpServletResponse response) {
     // convert API user to internal representation
     User userInput = DTOMapper.INSTANCE.convertUserPostDTOtoEntity(userPostDTO);
 
     // create user
     User createdUser = userService.createUser(userInput);
+    // the session token is handed out in a header, never in the body
+    response.setHeader(HttpHeaders.AUTHORIZATION, TokenAuthenticationFilter.BEARER_PREFIX + createdUser.getToken());
     // convert internal representation of user back to API
     return DTOMapper.INSTANCE.convertEntityToUserGetDTO(createdUser);
   }
 
+  @PostMapping("/users/batch")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public List<UserBatchItemGetDTO> createUsers(@RequestBody List<UserPostDTO> userPostDTOs) {
+    // convert API users to internal representation
+    List<User> userInputs = new ArrayList<>(userPostDTOs.size());
+    for (UserPostDTO userPostDTO : userPostDTOs) {
+      userInputs.add(DTOMapper.INSTANCE.convertUserPostDTOtoEntity(userPostDTO));
+    }
+
+    // create all users that do not collide
+    Map<Integer, String> conflicts = userService.createUsers(userInputs);
+
+    // report the outcome of every entry of the batch
+    List<UserBatchItemGetDTO> results = new ArrayList<>(userInputs.size());
+    for (int i = 0; i < userInputs.size(); i++) {
+      UserBatchItemGetDTO result = new UserBatchItemGetDTO();
+      result.setIndex(i);
+      if (conflicts.containsKey(i)) {
+        result.setError(conflicts.get(i));
+      } else {
+        result.setUser(DTOMapper.INSTANCE.convertEntityToUserGetDTO(userInputs.get(i)));
+      }
+      results.add(result);
+    }
+    return results;
+  }
+
   @PostMapping("/login")
   @ResponseStatus(HttpStatus.OK)
   @ResponseBody
-  public UserGetDTO loginUser(@RequestBody UserPostDTO userPostDTO) {
+  public UserGetDTO loginUser(@RequestBody UserPostDTO userPostDTO, HttpServletResponse response) {
     // convert API user to internal representation
     User userCredentials = DTOMapper.INSTANCE.convertUserPostDTOtoEntity(userPostDTO);
 
     // veryfy user credentials and log in if correct
     User user = userService.logInUser(userCredentials);
+    response.setHeader(HttpHeaders.AUTHORIZATION, TokenAuthenticationFilter.BEARER_PREFIX + user.getToken());
+    log.info("User logged in userId={} username={}", user.getId(), user.getUsername());
     // convert internal representation of user back to API
-    System.out.println("User logged in: " + user.getUsername());
     return DTOMapper.INSTANCE.convertEntityToUserGetDTO(user);
   }
 
@@ -97,4 +321,61 @@ public class UserController {
     userService.logoutUser(id);
   }
 
+  /**
+   * @return CBOR or Smile if the Accept header prefers one of them to JSON,
+   *         null for JSON
+   */
+  static MediaType getBinaryMediaType(String accept) {
+    if (accept == null) {
+      return null;
+    }
+    List<MediaType> mediaTypes;
+    try {
+      mediaTypes = MediaType.parseMediaTypes(accept);
+    } catch (InvalidMediaTypeException e) {
+      return null;
+    }
+    MediaType.sortBySpecificityAndQuality(mediaTypes);
+    for (MediaType mediaType : mediaTypes) {
+      if (mediaType.getQualityValue() == 0) {
+        continue;
+      }
+      if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+        return null;
+      }
+      for (MediaType binaryType : BINARY_FORMATS.keySet()) {
+        if (mediaType.includes(binaryType)) {
+          return binaryType;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String getETagSuffix(MediaType binaryType) {
+    return "-" + BINARY_FORMATS.get(binaryType).getFormatName().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * @return whether the Accept-Encoding header allows gzip (or any encoding)
+   */
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parameters = coding.split(";");
+      String name = parameters[0].trim();
+      if (name.equalsIgnoreCase("gzip") || name.equals("*")) {
+        for (int i = 1; i < parameters.length; i++) {
+          String parameter = parameters[i].trim().replace(" ", "");
+          if (parameter.matches("q=0(\\.0*)?")) {
+            return false;
+          }
+        }
+        return true;
+      }
+    }
+    return false;
+  }
 }
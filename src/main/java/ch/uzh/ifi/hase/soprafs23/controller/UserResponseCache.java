@@ -0,0 +1,130 @@
+package ch.uzh.ifi.hase.soprafs23.controller;
+
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.mapper.UserGetDTOJsonWriter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * User Response Cache
+ * Keeps the serialized JSON bodies of GET /users and GET /users/{userId},
+ * the list together with its gzip-compressed variant (single users are too
+ * small to gain from compression). A body is stored with the
+ * ETag it was built for and only served while the ETag is current, so every
+ * write of the UserService (which changes the ETags) invalidates it. Unchanged
+ * users are then neither read, mapped, serialized nor compressed again. The
+ * bodies are written by the UserGetDTOJsonWriter; the binary representations
+ * (CBOR, Smile) are transcoded from them when first requested.
+ */
+class UserResponseCache {
+
+  private final AtomicReference<Body> users = new AtomicReference<>();
+
+  private final Cache<Long, Body> usersById;
+
+  UserResponseCache(long maximumSize) {
+    this.usersById = Caffeine.newBuilder().maximumSize(maximumSize).build();
+  }
+
+  Body getUsers(String eTag, Supplier<List<UserGetDTO>> loader) {
+    Body body = users.get();
+    if (body == null || !Objects.equals(body.eTag, eTag)) {
+      body = new Body(eTag, UserGetDTOJsonWriter.toJson(loader.get()), true);
+      users.set(body);
+    }
+    return body;
+  }
+
+  Body getUser(long userId, String eTag, Supplier<UserGetDTO> loader) {
+    Body body = usersById.getIfPresent(userId);
+    if (body == null || !Objects.equals(body.eTag, eTag)) {
+      body = new Body(eTag, UserGetDTOJsonWriter.toJson(loader.get()), false);
+      usersById.put(userId, body);
+    }
+    return body;
+  }
+
+  void clear() {
+    users.set(null);
+    usersById.invalidateAll();
+  }
+
+  static class Body {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final String eTag;
+
+    private final byte[] json;
+
+    private final byte[] gzip;
+
+    // binary representations by format name
+    private final ConcurrentMap<String, byte[]> binary = new ConcurrentHashMap<>(4);
+
+    Body(String eTag, byte[] json, boolean compress) {
+      this.eTag = eTag;
+      this.json = json;
+      this.gzip = compress ? gzip(json) : null;
+    }
+
+    String getETag() {
+      return eTag;
+    }
+
+    byte[] getJson() {
+      return json;
+    }
+
+    /**
+     * @return the gzip-compressed body or null if it is not compressed
+     */
+    byte[] getGzip() {
+      return gzip;
+    }
+
+    /**
+     * @return the body in a binary format of Jackson, transcoded from the
+     *         JSON body without binding it to UserGetDTOs again
+     */
+    byte[] getBinary(JsonFactory binaryFactory) {
+      return binary.computeIfAbsent(binaryFactory.getFormatName(), format -> transcode(json, binaryFactory));
+    }
+
+    private static byte[] transcode(byte[] json, JsonFactory binaryFactory) {
+      ByteArrayOutputStream encoded = new ByteArrayOutputStream(json.length);
+      try (JsonParser parser = JSON_FACTORY.createParser(json);
+          JsonGenerator generator = binaryFactory.createGenerator(encoded)) {
+        parser.nextToken();
+        generator.copyCurrentStructure(parser);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return encoded.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] json) {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 32);
+      try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+        gzip.write(json);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return compressed.toByteArray();
+    }
+  }
+}
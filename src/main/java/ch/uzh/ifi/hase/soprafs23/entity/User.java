@@ -16,24 +16,38 @@ import java.time.LocalDate;
  * - nullable = false -> this cannot be left empty
  * - unique = true -> this value must be unqiue across the database -> composes
  * the primary key
+ * The table name is quoted because USER is a keyword since H2 2.x.
+ * Every lookup of the UserRepository is backed by a named index: username
+ * and token by their unique constraints, name (uniqueness check) and status
+ * (online users at startup) by a plain index. UserRepositoryQueryPlanTest
+ * checks that the queries use them.
  */
 @Entity
-@Table(name = "USER")
+@Table(name = "`USER`", uniqueConstraints = {
+    @UniqueConstraint(name = "UK_USER_USERNAME", columnNames = "username"),
+    @UniqueConstraint(name = "UK_USER_TOKEN", columnNames = "token") }, indexes = {
+    @Index(name = "IDX_USER_NAME", columnList = "name"),
+    @Index(name = "IDX_USER_STATUS", columnList = "status") })
 public class User implements Serializable {
 
   private static final long serialVersionUID = 1L;
 
+  /**
+   * Ids are drawn from a sequence in blocks of 50, so inserts need no round
+   * trip per row for the id and can be sent in JDBC batches.
+   */
   @Id
-  @GeneratedValue
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_sequence")
+  @SequenceGenerator(name = "user_sequence", sequenceName = "USER_SEQ", allocationSize = 50)
   private Long id;
 
   @Column(nullable = false)
   private String name;
 
-  @Column(nullable = false, unique = true)
+  @Column(nullable = false)
   private String username;
 
-  @Column(nullable = false, unique = true)
+  @Column(nullable = false)
   private String token;
 
   @Column(nullable = false)
@@ -45,6 +59,12 @@ public class User implements Serializable {
   @Column(nullable = true)
   private LocalDate birthDate;
 
+  /**
+   * Incremented by Hibernate on every update, used for the ETag of the user.
+   */
+  @Version
+  private Long version;
+
   public LocalDate getBirthDate() {
     return birthDate;
   }
@@ -93,6 +113,14 @@ public class User implements Serializable {
     this.token = token;
   }
 
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
+
   public UserStatus getStatus() {
     return status;
   }
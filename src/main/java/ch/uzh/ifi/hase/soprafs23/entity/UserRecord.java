@@ -0,0 +1,104 @@
+package ch.uzh.ifi.hase.soprafs23.entity;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDate;
+
+/**
+ * Reactive User Representation
+ * The row of the User table as read and written by the
+ * ReactiveUserRepository (R2DBC) of the reactive profile. The table and its
+ * sequence are created by Hibernate from the User entity, so the columns and
+ * their encoding (status as ordinal, version incremented on every update)
+ * have to match it (the table is the quoted "user", see
+ * UserRepository.TABLE_NAME).
+ */
+@Table("\"user\"")
+public class UserRecord {
+
+  @Id
+  private Long id;
+
+  private String name;
+
+  private String username;
+
+  private String token;
+
+  // the ordinal of the UserStatus, like the column of the JPA entity
+  private Integer status;
+
+  private LocalDate creationDate;
+
+  private LocalDate birthDate;
+
+  @Version
+  private Long version;
+
+  public Long getId() {
+    return id;
+  }
+
+  public void setId(Long id) {
+    this.id = id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public String getUsername() {
+    return username;
+  }
+
+  public void setUsername(String username) {
+    this.username = username;
+  }
+
+  public String getToken() {
+    return token;
+  }
+
+  public void setToken(String token) {
+    this.token = token;
+  }
+
+  public UserStatus getStatus() {
+    return status == null ? null : UserStatus.values()[status];
+  }
+
+  public void setStatus(UserStatus status) {
+    this.status = status == null ? null : status.ordinal();
+  }
+
+  public LocalDate getCreationDate() {
+    return creationDate;
+  }
+
+  public void setCreationDate(LocalDate creationDate) {
+    this.creationDate = creationDate;
+  }
+
+  public LocalDate getBirthDate() {
+    return birthDate;
+  }
+
+  public void setBirthDate(LocalDate birthDate) {
+    this.birthDate = birthDate;
+  }
+
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
+}
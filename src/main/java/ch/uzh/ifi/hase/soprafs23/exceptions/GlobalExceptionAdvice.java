@@ -2,6 +2,7 @@ package ch.uzh.ifi.hase.soprafs23.exceptions;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -33,6 +34,15 @@ public class GlobalExceptionAdvice extends ResponseEntityExceptionHandler {
     return new ResponseStatusException(HttpStatus.CONFLICT, ex.getMessage(), ex);
   }
 
+  // a unique constraint (or another one) rejected a write that got past the
+  // checks of the service, e.g. two users registering the same username at once
+  @ExceptionHandler(DataIntegrityViolationException.class)
+  protected ResponseEntity<Object> handleDataIntegrityViolation(RuntimeException ex, WebRequest request) {
+    log.warn("Request: {} violated a constraint: {}", request.getDescription(false), ex.getMessage());
+    String bodyOfResponse = "The request conflicts with an existing user!";
+    return handleExceptionInternal(ex, bodyOfResponse, new HttpHeaders(), HttpStatus.CONFLICT, request);
+  }
+
   // Keep this one disable for all testing purposes -> it shows more detail with
   // this one disabled
   @ExceptionHandler(HttpServerErrorException.InternalServerError.class)
@@ -0,0 +1,58 @@
+package ch.uzh.ifi.hase.soprafs23.repository;
+
+import ch.uzh.ifi.hase.soprafs23.entity.UserRecord;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+/**
+ * Non-blocking counterpart of the UserRepository (R2DBC) used by the reactive
+ * profile. The statements mirror the ones of the UserRepository and are
+ * served by the same indexes.
+ */
+@Repository("reactiveUserRepository")
+public interface ReactiveUserRepository extends R2dbcRepository<UserRecord, Long> {
+
+  Mono<UserRecord> findByUsername(String username);
+
+  @Query("select * from " + UserRepository.TABLE_NAME + " order by id asc")
+  Flux<UserRecord> findAllOrderById();
+
+  /**
+   * See UserRepository.findTakenFields.
+   */
+  @Query("select '" + UserRepository.TAKEN_USERNAME + "' from " + UserRepository.TABLE_NAME
+      + " where username = :username union all select '" + UserRepository.TAKEN_NAME + "' from "
+      + UserRepository.TABLE_NAME + " where name = :name")
+  Flux<String> findTakenFields(@Param("username") String username, @Param("name") String name);
+
+  /**
+   * Draws the id of a new user from the sequence of the User entity. Hibernate
+   * only hands out the block of ids that ends at a value it has drawn itself,
+   * so a value drawn here is never used twice.
+   */
+  @Query("select next value for USER_SEQ")
+  Mono<Long> nextId();
+
+  @Query("select id from " + UserRepository.TABLE_NAME + " where token = :token")
+  Mono<Long> findIdByToken(@Param("token") String token);
+
+  /**
+   * See UserRepository.updateProfile.
+   */
+  @Modifying
+  @Query("update " + UserRepository.TABLE_NAME + " set username = :username, birth_date = :birthDate,"
+      + " version = version + 1 where id = :id and version = :version")
+  Mono<Integer> updateProfile(@Param("id") long id, @Param("username") String username,
+      @Param("birthDate") LocalDate birthDate, @Param("version") long version);
+
+  @Modifying
+  @Query("update " + UserRepository.TABLE_NAME + " set status = :status where id = :id")
+  Mono<Integer> updateStatus(@Param("id") long id, @Param("status") int status);
+}
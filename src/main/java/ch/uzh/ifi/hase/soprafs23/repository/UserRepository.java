@@ -1,14 +1,152 @@
 package ch.uzh.ifi.hase.soprafs23.repository;
 
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 @Repository("userRepository")
 public interface UserRepository extends JpaRepository<User, Long> {
+
+  /**
+   * Number of rows the JDBC driver fetches per round trip while streaming.
+   */
+  int STREAM_FETCH_SIZE = 500;
+
+  /**
+   * Selects the fields of the UserGetDTO directly, so the read path neither
+   * hydrates (and dirty-checks) User entities nor reads the token column.
+   */
+  String SELECT_USER_GET_DTO = "select new ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO("
+      + "u.id, u.name, u.username, u.status, u.creationDate, u.birthDate) from User u";
+
+  /**
+   * Physical name of the table of the User entity, for native queries: the
+   * entity is mapped as `USER`, which Spring's naming strategy turns into the
+   * quoted, lower case "user".
+   */
+  String TABLE_NAME = "\"user\"";
+
+  /**
+   * Values returned by findTakenFields.
+   */
+  String TAKEN_USERNAME = "username";
+
+  String TAKEN_NAME = "name";
+
   User findByName(String name);
 
   User findByUsername(String username);
 
   User findById(long id);
+
+  boolean existsByUsername(String username);
+
+  /**
+   * Uniqueness check of a new user in one statement: returns TAKEN_USERNAME
+   * and/or TAKEN_NAME for the fields that collide with an existing user. The
+   * two branches of the union are served by UK_USER_USERNAME and
+   * IDX_USER_NAME, an OR of both conditions would scan the table.
+   */
+  @Query(value = "select '" + TAKEN_USERNAME + "' from " + TABLE_NAME + " where username = :username"
+      + " union all select '" + TAKEN_NAME + "' from " + TABLE_NAME + " where name = :name", nativeQuery = true)
+  List<String> findTakenFields(@Param("username") String username, @Param("name") String name);
+
+  /**
+   * Set-based uniqueness check of a batch: returns the given usernames that
+   * are already taken.
+   */
+  @Query("select u.username from User u where u.username in :usernames")
+  List<String> findTakenUsernames(@Param("usernames") Collection<String> usernames);
+
+  /**
+   * Set-based uniqueness check of a batch: returns the given names that are
+   * already taken.
+   */
+  @Query("select u.name from User u where u.name in :names")
+  List<String> findTakenNames(@Param("names") Collection<String> names);
+
+  @Query(SELECT_USER_GET_DTO + " where u.id = :id")
+  UserGetDTO findUserGetDTOById(@Param("id") long id);
+
+  @Query(SELECT_USER_GET_DTO)
+  List<UserGetDTO> findAllUserGetDTOs();
+
+  /**
+   * Keyset pagination: returns the users with an id strictly greater than the
+   * given cursor, ordered by id. Only the page size of the pageable is used.
+   */
+  @Query(SELECT_USER_GET_DTO + " where u.id > :after order by u.id asc")
+  List<UserGetDTO> findUserGetDTOsAfter(@Param("after") long after, Pageable pageable);
+
+  @Query(SELECT_USER_GET_DTO + " where u.id in :ids order by u.id asc")
+  List<UserGetDTO> findUserGetDTOsByIdIn(@Param("ids") Collection<Long> ids);
+
+  /**
+   * Streams all users ordered by id. Has to be consumed inside a (read-only)
+   * transaction and closed afterwards.
+   */
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+  @Query(SELECT_USER_GET_DTO + " order by u.id asc")
+  Stream<UserGetDTO> streamAllUserGetDTOs();
+
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+  @Query("select u.id from User u where u.status = :status")
+  Stream<Long> streamIdsByStatus(@Param("status") UserStatus status);
+
+  /**
+   * Sets the status of all given users with one statement.
+   */
+  @Modifying
+  @Query("update User u set u.status = :status where u.id in :ids")
+  int updateStatus(@Param("ids") Collection<Long> ids, @Param("status") UserStatus status);
+
+  /**
+   * Versioned update of the editable fields in one statement: it only matches
+   * while the user still has the given version, and increments it. A taken
+   * username fails the statement through UK_USER_USERNAME.
+   *
+   * @return 1 if the user was updated, 0 if it does not exist or has been
+   *         changed in the meantime
+   */
+  @Modifying
+  @Query("update User u set u.username = :username, u.birthDate = :birthDate, u.version = u.version + 1"
+      + " where u.id = :id and u.version = :version")
+  int updateProfile(@Param("id") long id, @Param("username") String username,
+      @Param("birthDate") LocalDate birthDate, @Param("version") long version);
+
+  /**
+   * Streams the indexed fields of every user, used to build the in-memory
+   * indexes at startup.
+   */
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+  @Query("select u.id as id, u.token as token, u.username as username, u.name as name from User u")
+  Stream<IndexEntry> streamAllIndexEntries();
+
+  @Query("select u.id from User u where u.token = :token")
+  Long findIdByToken(@Param("token") String token);
+
+  interface IndexEntry {
+    Long getId();
+
+    String getToken();
+
+    String getUsername();
+
+    String getName();
+  }
 }
@@ -0,0 +1,26 @@
+package ch.uzh.ifi.hase.soprafs23.rest.dto;
+
+/**
+ * Answer of the availability check of the signup form.
+ */
+public class UserAvailabilityGetDTO {
+
+  private String username;
+  private boolean available;
+
+  public String getUsername() {
+    return username;
+  }
+
+  public void setUsername(String username) {
+    this.username = username;
+  }
+
+  public boolean isAvailable() {
+    return available;
+  }
+
+  public void setAvailable(boolean available) {
+    this.available = available;
+  }
+}
@@ -0,0 +1,36 @@
+package ch.uzh.ifi.hase.soprafs23.rest.dto;
+
+/**
+ * Result for one entry of a batch creation: either the created user or the
+ * reason why it was rejected. The index refers to the position in the request.
+ */
+public class UserBatchItemGetDTO {
+
+  private int index;
+  private UserGetDTO user;
+  private String error;
+
+  public int getIndex() {
+    return index;
+  }
+
+  public void setIndex(int index) {
+    this.index = index;
+  }
+
+  public UserGetDTO getUser() {
+    return user;
+  }
+
+  public void setUser(UserGetDTO user) {
+    this.user = user;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  public void setError(String error) {
+    this.error = error;
+  }
+}
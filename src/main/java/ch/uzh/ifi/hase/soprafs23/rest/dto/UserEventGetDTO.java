@@ -0,0 +1,47 @@
+package ch.uzh.ifi.hase.soprafs23.rest.dto;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserEventType;
+
+/**
+ * Change of a user pushed to the subscribers of GET /users/events. CREATED and
+ * EDITED events carry the new profile, ONLINE and OFFLINE events only the id.
+ */
+public class UserEventGetDTO {
+
+  private UserEventType type;
+  private Long userId;
+  private UserGetDTO user;
+
+  public UserEventGetDTO() {
+  }
+
+  public UserEventGetDTO(UserEventType type, Long userId, UserGetDTO user) {
+    this.type = type;
+    this.userId = userId;
+    this.user = user;
+  }
+
+  public UserEventType getType() {
+    return type;
+  }
+
+  public void setType(UserEventType type) {
+    this.type = type;
+  }
+
+  public Long getUserId() {
+    return userId;
+  }
+
+  public void setUserId(Long userId) {
+    this.userId = userId;
+  }
+
+  public UserGetDTO getUser() {
+    return user;
+  }
+
+  public void setUser(UserGetDTO user) {
+    this.user = user;
+  }
+}
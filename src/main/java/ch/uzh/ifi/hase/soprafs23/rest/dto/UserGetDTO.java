@@ -13,6 +13,23 @@ public class UserGetDTO {
   private LocalDate creationDate;
   private LocalDate birthDate;
 
+  public UserGetDTO() {
+  }
+
+  /**
+   * Used by the projection queries in the UserRepository, which select the
+   * fields straight into this DTO without loading the User entity.
+   */
+  public UserGetDTO(Long id, String name, String username, UserStatus status, LocalDate creationDate,
+      LocalDate birthDate) {
+    this.id = id;
+    this.name = name;
+    this.username = username;
+    this.status = status;
+    this.creationDate = creationDate;
+    this.birthDate = birthDate;
+  }
+
   public LocalDate getBirthDate() {
     return birthDate;
   }
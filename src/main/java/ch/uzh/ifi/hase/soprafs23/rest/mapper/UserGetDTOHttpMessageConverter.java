@@ -0,0 +1,88 @@
+package ch.uzh.ifi.hase.soprafs23.rest.mapper;
+
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+/**
+ * UserGetDTO HTTP Message Converter
+ * Writes response bodies of type UserGetDTO and collections of UserGetDTOs
+ * (e.g. List<UserGetDTO>) with the UserGetDTOJsonWriter. Spring Boot puts
+ * converter beans in front of its default converters, so these bodies no
+ * longer reach Jackson; everything else (and all request bodies) still does.
+ */
+@Component
+public class UserGetDTOHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+  public UserGetDTOHttpMessageConverter() {
+    super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return UserGetDTO.class.isAssignableFrom(clazz);
+  }
+
+  @Override
+  public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+    return isUserGetDTOs(type != null ? type : clazz) && canWrite(mediaType);
+  }
+
+  @Override
+  public boolean canRead(Class<?> clazz, @Nullable MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  protected void writeInternal(Object body, @Nullable Type type, HttpOutputMessage outputMessage) throws IOException {
+    if (body instanceof UserGetDTO) {
+      UserGetDTOJsonWriter.write((UserGetDTO) body, outputMessage.getBody());
+    } else {
+      UserGetDTOJsonWriter.write((Collection<UserGetDTO>) body, outputMessage.getBody());
+    }
+  }
+
+  @Override
+  protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+    throw new HttpMessageNotReadableException("UserGetDTOs are only written by this converter", inputMessage);
+  }
+
+  @Override
+  public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) {
+    throw new HttpMessageNotReadableException("UserGetDTOs are only written by this converter", inputMessage);
+  }
+
+  /**
+   * @return whether the declared body type is UserGetDTO or a collection of
+   *         UserGetDTOs
+   */
+  static boolean isUserGetDTOs(Type type) {
+    if (type instanceof Class) {
+      return UserGetDTO.class.isAssignableFrom((Class<?>) type);
+    }
+    if (type instanceof ParameterizedType) {
+      ParameterizedType parameterizedType = (ParameterizedType) type;
+      Type[] arguments = parameterizedType.getActualTypeArguments();
+      return parameterizedType.getRawType() instanceof Class
+          && Collection.class.isAssignableFrom((Class<?>) parameterizedType.getRawType())
+          && arguments.length == 1 && arguments[0] == UserGetDTO.class;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,323 @@
+package ch.uzh.ifi.hase.soprafs23.rest.mapper;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * UserGetDTO JSON Writer
+ * Writes UserGetDTOs as JSON without going through Jackson's reflection-based
+ * bean serialization: the field names and the UserStatus values are encoded
+ * once, dates are written digit by digit and the output goes into byte
+ * buffers that are reused across requests. The output is byte for byte the
+ * one of the ObjectMapper configured by Spring Boot (fields in declaration
+ * order, nulls included, ISO dates), UserGetDTOJsonWriterTest compares both.
+ * The one exception are strings with an unpaired surrogate, which Jackson
+ * refuses to write: here the surrogate is replaced by '?'.
+ * Has to be extended together with the UserGetDTO.
+ */
+public final class UserGetDTOJsonWriter {
+
+  // buffers that grew larger than this (long user lists) are not kept
+  static final int MAX_POOLED_BUFFER_SIZE = 1 << 20;
+
+  private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+  private static final ArrayBlockingQueue<Buffer> BUFFERS = new ArrayBlockingQueue<>(
+      2 * Runtime.getRuntime().availableProcessors());
+
+  private static final byte[] ID = ascii("{\"id\":");
+
+  private static final byte[] NAME = ascii(",\"name\":");
+
+  private static final byte[] USERNAME = ascii(",\"username\":");
+
+  private static final byte[] STATUS = ascii(",\"status\":");
+
+  private static final byte[] CREATION_DATE = ascii(",\"creationDate\":");
+
+  private static final byte[] BIRTH_DATE = ascii(",\"birthDate\":");
+
+  private static final byte[] NULL = ascii("null");
+
+  private static final byte[][] STATUS_VALUES = new byte[UserStatus.values().length][];
+
+  static {
+    for (UserStatus status : UserStatus.values()) {
+      STATUS_VALUES[status.ordinal()] = ascii("\"" + status.name() + "\"");
+    }
+  }
+
+  private static final byte[] HEX_DIGITS = ascii("0123456789ABCDEF");
+
+  private UserGetDTOJsonWriter() {
+  }
+
+  public static byte[] toJson(UserGetDTO user) {
+    Buffer buffer = acquire();
+    try {
+      writeUser(buffer, user);
+      return buffer.toByteArray();
+    } finally {
+      release(buffer);
+    }
+  }
+
+  public static byte[] toJson(Collection<UserGetDTO> users) {
+    Buffer buffer = acquire();
+    try {
+      writeUsers(buffer, users);
+      return buffer.toByteArray();
+    } finally {
+      release(buffer);
+    }
+  }
+
+  public static void write(UserGetDTO user, OutputStream out) throws IOException {
+    Buffer buffer = acquire();
+    try {
+      writeUser(buffer, user);
+      buffer.writeTo(out);
+    } finally {
+      release(buffer);
+    }
+  }
+
+  public static void write(Collection<UserGetDTO> users, OutputStream out) throws IOException {
+    Buffer buffer = acquire();
+    try {
+      writeUsers(buffer, users);
+      buffer.writeTo(out);
+    } finally {
+      release(buffer);
+    }
+  }
+
+  private static void writeUsers(Buffer buffer, Collection<UserGetDTO> users) {
+    buffer.writeByte('[');
+    boolean first = true;
+    for (UserGetDTO user : users) {
+      if (!first) {
+        buffer.writeByte(',');
+      }
+      writeUser(buffer, user);
+      first = false;
+    }
+    buffer.writeByte(']');
+  }
+
+  private static void writeUser(Buffer buffer, UserGetDTO user) {
+    if (user == null) {
+      buffer.write(NULL);
+      return;
+    }
+    buffer.write(ID);
+    if (user.getId() == null) {
+      buffer.write(NULL);
+    } else {
+      buffer.writeLong(user.getId());
+    }
+    buffer.write(NAME);
+    buffer.writeString(user.getName());
+    buffer.write(USERNAME);
+    buffer.writeString(user.getUsername());
+    buffer.write(STATUS);
+    buffer.write(user.getStatus() == null ? NULL : STATUS_VALUES[user.getStatus().ordinal()]);
+    buffer.write(CREATION_DATE);
+    buffer.writeDate(user.getCreationDate());
+    buffer.write(BIRTH_DATE);
+    buffer.writeDate(user.getBirthDate());
+    buffer.writeByte('}');
+  }
+
+  private static Buffer acquire() {
+    Buffer buffer = BUFFERS.poll();
+    return buffer != null ? buffer : new Buffer(INITIAL_BUFFER_SIZE);
+  }
+
+  private static void release(Buffer buffer) {
+    if (buffer.bytes.length <= MAX_POOLED_BUFFER_SIZE) {
+      buffer.size = 0;
+      BUFFERS.offer(buffer);
+    }
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Growable byte buffer, used by one thread between acquire and release.
+   */
+  static final class Buffer {
+
+    private byte[] bytes;
+
+    private int size;
+
+    Buffer(int capacity) {
+      this.bytes = new byte[capacity];
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(bytes, size);
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+      out.write(bytes, 0, size);
+    }
+
+    void writeByte(char value) {
+      ensureCapacity(1);
+      bytes[size++] = (byte) value;
+    }
+
+    void write(byte[] value) {
+      ensureCapacity(value.length);
+      System.arraycopy(value, 0, bytes, size, value.length);
+      size += value.length;
+    }
+
+    void writeLong(long value) {
+      if (value == Long.MIN_VALUE) {
+        write(ascii(Long.toString(value)));
+        return;
+      }
+      ensureCapacity(20);
+      if (value < 0) {
+        bytes[size++] = '-';
+        value = -value;
+      }
+      int digits = 1;
+      for (long rest = value / 10; rest != 0; rest /= 10) {
+        digits++;
+      }
+      for (int i = size + digits - 1; i >= size; i--) {
+        bytes[i] = (byte) ('0' + value % 10);
+        value /= 10;
+      }
+      size += digits;
+    }
+
+    /**
+     * Writes yyyy-MM-dd (ISO_LOCAL_DATE as used by Jackson), years outside
+     * 0-9999 are left to LocalDate.toString.
+     */
+    void writeDate(LocalDate date) {
+      if (date == null) {
+        write(NULL);
+        return;
+      }
+      int year = date.getYear();
+      if (year < 0 || year > 9999) {
+        writeString(date.toString());
+        return;
+      }
+      ensureCapacity(12);
+      bytes[size++] = '"';
+      writeDigits(year / 100);
+      writeDigits(year % 100);
+      bytes[size++] = '-';
+      writeDigits(date.getMonthValue());
+      bytes[size++] = '-';
+      writeDigits(date.getDayOfMonth());
+      bytes[size++] = '"';
+    }
+
+    private void writeDigits(int twoDigits) {
+      bytes[size++] = (byte) ('0' + twoDigits / 10);
+      bytes[size++] = (byte) ('0' + twoDigits % 10);
+    }
+
+    /**
+     * Writes a quoted JSON string encoded as UTF-8, escaped like Jackson does:
+     * quote, backslash and control characters (the common ones in their short
+     * form), everything else as is. An unpaired surrogate becomes '?'.
+     */
+    void writeString(String value) {
+      if (value == null) {
+        write(NULL);
+        return;
+      }
+      int length = value.length();
+      // worst case: six bytes per escaped char
+      ensureCapacity(length * 6 + 2);
+      byte[] out = bytes;
+      int position = size;
+      out[position++] = '"';
+      for (int i = 0; i < length; i++) {
+        char c = value.charAt(i);
+        if (c < 0x80) {
+          if (c >= 0x20 && c != '"' && c != '\\') {
+            out[position++] = (byte) c;
+          } else {
+            position = escape(out, position, c);
+          }
+        } else if (c < 0x800) {
+          out[position++] = (byte) (0xC0 | (c >> 6));
+          out[position++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int codePoint = Character.toCodePoint(c, value.charAt(++i));
+          out[position++] = (byte) (0xF0 | (codePoint >> 18));
+          out[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+          out[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+          out[position++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+          // unpaired surrogate, replaced like String.getBytes does
+          out[position++] = '?';
+        } else {
+          out[position++] = (byte) (0xE0 | (c >> 12));
+          out[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+          out[position++] = (byte) (0x80 | (c & 0x3F));
+        }
+      }
+      out[position++] = '"';
+      size = position;
+    }
+
+    private static int escape(byte[] out, int position, char c) {
+      out[position++] = '\\';
+      switch (c) {
+        case '"':
+        case '\\':
+          out[position++] = (byte) c;
+          break;
+        case '\b':
+          out[position++] = 'b';
+          break;
+        case '\t':
+          out[position++] = 't';
+          break;
+        case '\n':
+          out[position++] = 'n';
+          break;
+        case '\f':
+          out[position++] = 'f';
+          break;
+        case '\r':
+          out[position++] = 'r';
+          break;
+        default:
+          out[position++] = 'u';
+          out[position++] = '0';
+          out[position++] = '0';
+          out[position++] = HEX_DIGITS[c >> 4];
+          out[position++] = HEX_DIGITS[c & 0xF];
+      }
+      return position;
+    }
+
+    private void ensureCapacity(int additional) {
+      if (size + additional > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+      }
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive Concurrency Limit
+ * Limits the number of requests in flight with a limit that adapts to the
+ * latency (additive increase, multiplicative decrease): a request slower
+ * than the target latency shrinks the limit by BACKOFF_RATIO, but only if it
+ * started after the last decrease, so the requests that were in flight
+ * together count as one congestion signal. Once a window of as many fast
+ * requests as the limit has completed while at least half of it was in use,
+ * the limit grows by one. When the database slows down, excess requests are
+ * therefore rejected right away instead of queueing for a connection.
+ */
+class AdaptiveConcurrencyLimit {
+
+  static final double BACKOFF_RATIO = 0.9;
+
+  private static final long NEVER = Long.MIN_VALUE;
+
+  private final int minLimit;
+
+  private final int maxLimit;
+
+  private final long targetLatencyNanos;
+
+  private final AtomicInteger limit;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  // fast requests completed under load since the limit last changed
+  private final AtomicInteger fastInWindow = new AtomicInteger();
+
+  private final AtomicLong lastBackoffNanos = new AtomicLong(NEVER);
+
+  AdaptiveConcurrencyLimit(int minLimit, int maxLimit, long targetLatencyNanos) {
+    if (minLimit < 1 || maxLimit < minLimit) {
+      throw new IllegalArgumentException("The concurrency limits have to satisfy 1 <= min <= max");
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.targetLatencyNanos = targetLatencyNanos;
+    this.limit = new AtomicInteger(maxLimit);
+  }
+
+  /**
+   * @return whether the request may start, it then has to be released
+   */
+  boolean tryAcquire() {
+    if (inFlight.incrementAndGet() > limit.get()) {
+      inFlight.decrementAndGet();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Ends a request started with tryAcquire and adapts the limit to its
+   * latency.
+   *
+   * @param startNanos System.nanoTime() when the request started
+   * @param endNanos   System.nanoTime() when it completed
+   */
+  void release(long startNanos, long endNanos) {
+    int inFlightBefore = inFlight.getAndDecrement();
+    if (endNanos - startNanos > targetLatencyNanos) {
+      long lastBackoff = lastBackoffNanos.get();
+      if ((lastBackoff == NEVER || startNanos - lastBackoff > 0)
+          && lastBackoffNanos.compareAndSet(lastBackoff, endNanos)) {
+        fastInWindow.set(0);
+        limit.updateAndGet(current -> Math.max(minLimit, (int) (current * BACKOFF_RATIO)));
+      }
+    } else if (inFlightBefore * 2 >= limit.get() && fastInWindow.incrementAndGet() >= limit.get()) {
+      fastInWindow.set(0);
+      limit.updateAndGet(current -> Math.min(maxLimit, current + 1));
+    }
+  }
+
+  int getLimit() {
+    return limit.get();
+  }
+
+  int getInFlight() {
+    return inFlight.get();
+  }
+}
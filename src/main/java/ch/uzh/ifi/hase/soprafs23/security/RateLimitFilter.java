@@ -0,0 +1,175 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate Limit Filter
+ * Protects POST /login and the /users/** endpoints from request storms
+ * before they reach the database:
+ * - every client (remote address) has a token bucket, a stricter one for
+ * logins, which answers 429 with a Retry-After header when it runs empty
+ * - all clients share a global token bucket (429 as well)
+ * - an adaptive concurrency limit answers 503 as soon as the latency of the
+ * requests in flight rises above the target
+ *
+ * Behind a reverse proxy, server.forward-headers-strategy has to be set for
+ * the remote address to be the one of the client.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class RateLimitFilter extends OncePerRequestFilter implements MeterBinder {
+
+  // buckets of clients that have been quiet for this long start full again
+  private static final Duration CLIENT_IDLE_TIMEOUT = Duration.ofMinutes(1);
+
+  private static final long MAX_TRACKED_CLIENTS = 100_000;
+
+  private final boolean enabled;
+
+  private final double loginRate;
+
+  private final int loginBurst;
+
+  private final double usersRate;
+
+  private final int usersBurst;
+
+  private final TokenBucket globalBucket;
+
+  private final AdaptiveConcurrencyLimit concurrencyLimit;
+
+  private final Cache<String, TokenBucket> clientBuckets = Caffeine.newBuilder()
+      .maximumSize(MAX_TRACKED_CLIENTS)
+      .expireAfterAccess(CLIENT_IDLE_TIMEOUT)
+      .build();
+
+  private final LongAdder rejectedByClientLimit = new LongAdder();
+
+  private final LongAdder rejectedByGlobalLimit = new LongAdder();
+
+  private final LongAdder rejectedByConcurrencyLimit = new LongAdder();
+
+  public RateLimitFilter(@Value("${users.ratelimit.enabled:true}") boolean enabled,
+      @Value("${users.ratelimit.login.rate:5}") double loginRate,
+      @Value("${users.ratelimit.login.burst:10}") int loginBurst,
+      @Value("${users.ratelimit.users.rate:50}") double usersRate,
+      @Value("${users.ratelimit.users.burst:100}") int usersBurst,
+      @Value("${users.ratelimit.global.rate:2000}") double globalRate,
+      @Value("${users.ratelimit.global.burst:4000}") int globalBurst,
+      @Value("${users.ratelimit.concurrency.min-limit:10}") int minConcurrency,
+      @Value("${users.ratelimit.concurrency.max-limit:200}") int maxConcurrency,
+      @Value("${users.ratelimit.concurrency.target-latency-ms:250}") long targetLatencyMs) {
+    this.enabled = enabled;
+    this.loginRate = loginRate;
+    this.loginBurst = loginBurst;
+    this.usersRate = usersRate;
+    this.usersBurst = usersBurst;
+    this.globalBucket = new TokenBucket(globalRate, globalBurst);
+    this.concurrencyLimit = new AdaptiveConcurrencyLimit(minConcurrency, maxConcurrency,
+        TimeUnit.MILLISECONDS.toNanos(targetLatencyMs));
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    if (!enabled) {
+      return true;
+    }
+    String path = UrlPathHelper.defaultInstance.getPathWithinApplication(request);
+    return !(isLogin(request) || path.equals("/users") || path.startsWith("/users/"));
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    long start = System.nanoTime();
+    boolean login = isLogin(request);
+    // logins and the other endpoints are limited separately per client
+    String clientKey = (login ? "login:" : "users:") + request.getRemoteAddr();
+    TokenBucket clientBucket = clientBuckets.get(clientKey,
+        key -> login ? new TokenBucket(loginRate, loginBurst) : new TokenBucket(usersRate, usersBurst));
+
+    if (!clientBucket.tryAcquire(start)) {
+      rejectedByClientLimit.increment();
+      tooManyRequests(response, clientBucket.nanosUntilAvailable(start));
+      return;
+    }
+    if (!globalBucket.tryAcquire(start)) {
+      rejectedByGlobalLimit.increment();
+      tooManyRequests(response, globalBucket.nanosUntilAvailable(start));
+      return;
+    }
+    if (!concurrencyLimit.tryAcquire()) {
+      rejectedByConcurrencyLimit.increment();
+      response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+      response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "The server is overloaded, please try again later!");
+      return;
+    }
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      concurrencyLimit.release(start, System.nanoTime());
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("users.ratelimit.rejected", rejectedByClientLimit, LongAdder::sum)
+        .description("Requests rejected by the rate limits")
+        .tag("limit", "client")
+        .register(registry);
+    FunctionCounter.builder("users.ratelimit.rejected", rejectedByGlobalLimit, LongAdder::sum)
+        .description("Requests rejected by the rate limits")
+        .tag("limit", "global")
+        .register(registry);
+    FunctionCounter.builder("users.ratelimit.rejected", rejectedByConcurrencyLimit, LongAdder::sum)
+        .description("Requests rejected by the rate limits")
+        .tag("limit", "concurrency")
+        .register(registry);
+    Gauge.builder("users.ratelimit.global.tokens", globalBucket, bucket -> bucket.availableTokens(System.nanoTime()))
+        .description("Tokens left in the global token bucket")
+        .register(registry);
+    Gauge.builder("users.ratelimit.clients", clientBuckets, Cache::estimatedSize)
+        .description("Clients with a token bucket")
+        .register(registry);
+    Gauge.builder("users.ratelimit.concurrency.limit", concurrencyLimit, AdaptiveConcurrencyLimit::getLimit)
+        .description("Current adaptive limit of requests in flight")
+        .register(registry);
+    Gauge.builder("users.ratelimit.concurrency.inflight", concurrencyLimit, AdaptiveConcurrencyLimit::getInFlight)
+        .description("Requests in flight")
+        .register(registry);
+  }
+
+  private static void tooManyRequests(HttpServletResponse response, long nanosUntilAvailable) throws IOException {
+    long retryAfterSeconds = Math.max(1, (nanosUntilAvailable + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+    response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many requests, please try again later!");
+  }
+
+  private static boolean isLogin(HttpServletRequest request) {
+    return HttpMethod.POST.matches(request.getMethod())
+        && UrlPathHelper.defaultInstance.getPathWithinApplication(request).equals("/login");
+  }
+}
@@ -0,0 +1,79 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import ch.uzh.ifi.hase.soprafs23.service.UserTokenIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Token Authentication Filter
+ * Identifies the caller of every /users/** request by the session token in
+ * the Authorization header ("Bearer <token>"). The token is resolved through
+ * the in-memory UserTokenIndex, so no database access is needed. The id of
+ * the authenticated user is stored in the request attribute
+ * AUTHENTICATED_USER_ID.
+ *
+ * Requests with an unknown token are rejected. Requests without a token are
+ * only rejected if users.auth.required is set, except for the registration
+ * endpoints (and the username availability check of the signup form) which
+ * have to stay open.
+ */
+@Component
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+  public static final String AUTHENTICATED_USER_ID = "authenticatedUserId";
+
+  public static final String BEARER_PREFIX = "Bearer ";
+
+  private final UserTokenIndex userTokenIndex;
+
+  private final boolean authenticationRequired;
+
+  public TokenAuthenticationFilter(UserTokenIndex userTokenIndex,
+      @Value("${users.auth.required:false}") boolean authenticationRequired) {
+    this.userTokenIndex = userTokenIndex;
+    this.authenticationRequired = authenticationRequired;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    String path = UrlPathHelper.defaultInstance.getPathWithinApplication(request);
+    return !(path.equals("/users") || path.startsWith("/users/"));
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+    if (authorization != null && authorization.startsWith(BEARER_PREFIX)) {
+      Long userId = userTokenIndex.getUserId(authorization.substring(BEARER_PREFIX.length()));
+      if (userId == null) {
+        response.sendError(HttpStatus.UNAUTHORIZED.value(), "The token is invalid!");
+        return;
+      }
+      request.setAttribute(AUTHENTICATED_USER_ID, userId);
+    } else if (authenticationRequired && !isRegistration(request)) {
+      response.sendError(HttpStatus.UNAUTHORIZED.value(), "A token is required!");
+      return;
+    }
+    filterChain.doFilter(request, response);
+  }
+
+  private static boolean isRegistration(HttpServletRequest request) {
+    String path = UrlPathHelper.defaultInstance.getPathWithinApplication(request);
+    if (HttpMethod.GET.matches(request.getMethod())) {
+      return path.equals("/users/availability");
+    }
+    return HttpMethod.POST.matches(request.getMethod()) && (path.equals("/users") || path.equals("/users/batch"));
+  }
+}
@@ -0,0 +1,60 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token Bucket
+ * Lock-free token bucket that refills with a fixed rate up to its capacity.
+ * Instead of a token count and a refill timestamp it only stores the time at
+ * which the bucket will be full again (the "theoretical arrival time" of the
+ * generic cell rate algorithm), so taking a token is a single
+ * compare-and-set. Times are System.nanoTime() values.
+ */
+class TokenBucket {
+
+  private final long nanosPerToken;
+
+  private final long capacityNanos;
+
+  private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+  TokenBucket(double tokensPerSecond, int capacity) {
+    if (tokensPerSecond <= 0 || capacity < 1) {
+      throw new IllegalArgumentException("The rate and the capacity of a token bucket have to be positive");
+    }
+    this.nanosPerToken = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond));
+    this.capacityNanos = nanosPerToken * capacity;
+  }
+
+  /**
+   * @return whether a token was available (and has been taken)
+   */
+  boolean tryAcquire(long now) {
+    while (true) {
+      long current = fullAt.get();
+      long next = Math.max(current, now) + nanosPerToken;
+      if (next - now > capacityNanos) {
+        return false;
+      }
+      if (fullAt.compareAndSet(current, next)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * @return the nanoseconds until the next token is available, 0 if there is
+   *         one
+   */
+  long nanosUntilAvailable(long now) {
+    return Math.max(0, Math.max(fullAt.get(), now) + nanosPerToken - capacityNanos - now);
+  }
+
+  /**
+   * @return the number of tokens currently in the bucket
+   */
+  long availableTokens(long now) {
+    return (capacityNanos - (Math.max(fullAt.get(), now) - now)) / nanosPerToken;
+  }
+}
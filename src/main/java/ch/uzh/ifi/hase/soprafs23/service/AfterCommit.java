@@ -0,0 +1,29 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * AfterCommit
+ * Defers updates of in-memory structures (caches, indexes) until the
+ * surrounding transaction has committed, so they never expose data that is
+ * rolled back. Outside of a transaction the action runs immediately.
+ */
+final class AfterCommit {
+
+  private AfterCommit() {
+  }
+
+  static void run(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        action.run();
+      }
+    });
+  }
+}
@@ -0,0 +1,151 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.entity.UserRecord;
+import ch.uzh.ifi.hase.soprafs23.repository.ReactiveUserRepository;
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Reactive User Service
+ * The non-blocking counterpart of the UserService used by the WebFlux routes
+ * of the reactive profile. Every database access goes through the
+ * ReactiveUserRepository (R2DBC), so no thread waits for the database. The
+ * in-memory indexes and caches of the UserService are not used: they are
+ * filled by the blocking stack.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveUserService {
+
+  // how often an edit is applied again after losing against a concurrent edit
+  static final int MAX_EDIT_ATTEMPTS = 3;
+
+  private final ReactiveUserRepository userRepository;
+
+  private final TransactionalOperator transactionalOperator;
+
+  public ReactiveUserService(@Qualifier("reactiveUserRepository") ReactiveUserRepository userRepository,
+      TransactionalOperator transactionalOperator) {
+    this.userRepository = userRepository;
+    this.transactionalOperator = transactionalOperator;
+  }
+
+  public Flux<UserRecord> getUsers() {
+    return userRepository.findAllOrderById();
+  }
+
+  public Mono<UserRecord> getUser(long userId) {
+    return userRepository.findById(userId)
+        .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "This user does not exist!")));
+  }
+
+  /**
+   * @return the id of the user with the given session token, empty if there
+   *         is none
+   */
+  public Mono<Long> getUserIdByToken(String token) {
+    return userRepository.findIdByToken(token);
+  }
+
+  /**
+   * Checks the uniqueness with one query (see UserService.checkIfUserExists)
+   * and inserts the user in the same transaction. A concurrent registration
+   * of the same username is caught by the unique constraint.
+   */
+  public Mono<UserRecord> createUser(UserRecord newUser) {
+    return userRepository.findTakenFields(newUser.getUsername(), newUser.getName())
+        .collectList()
+        .flatMap(takenFields -> {
+          String conflict = UserService.getConflictMessage(takenFields.contains(UserRepository.TAKEN_USERNAME),
+              takenFields.contains(UserRepository.TAKEN_NAME));
+          if (conflict != null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.CONFLICT, conflict));
+          }
+          return userRepository.nextId();
+        })
+        .flatMap(id -> {
+          newUser.setId(id);
+          newUser.setToken(UUID.randomUUID().toString());
+          newUser.setStatus(UserStatus.ONLINE);
+          newUser.setCreationDate(LocalDate.now());
+          return userRepository.save(newUser);
+        })
+        .onErrorMap(DataIntegrityViolationException.class, e -> new ResponseStatusException(HttpStatus.CONFLICT,
+            UserService.getConflictMessage(true, false), e))
+        .as(transactionalOperator::transactional);
+  }
+
+  /**
+   * Applies the changes with one versioned update, see UserService.editUser.
+   * Without an expected version, an edit that loses against a concurrent edit
+   * is applied again to the new version.
+   */
+  public Mono<Void> editUser(long userId, UserPostDTO userChanges, Long expectedVersion) {
+    return getUser(userId)
+        .flatMap(user -> {
+          if (expectedVersion != null && !expectedVersion.equals(user.getVersion())) {
+            return Mono.error(new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+                "The user has been changed in the meantime!"));
+          }
+          //only change the birthday if it has been set
+          if (userChanges.getBirthDate() != null) {
+            user.setBirthDate(LocalDate.parse(userChanges.getBirthDate()));
+          }
+          //only change the username if it has been set
+          if (userChanges.getUsername() != null) {
+            user.setUsername(userChanges.getUsername());
+          }
+          return userRepository.updateProfile(userId, user.getUsername(), user.getBirthDate(), user.getVersion())
+              .onErrorMap(DataIntegrityViolationException.class, e -> new ResponseStatusException(HttpStatus.CONFLICT,
+                  "The username provided is not unique. Please choose a diffrent username!", e));
+        })
+        .flatMap(updated -> {
+          if (updated > 0) {
+            return Mono.<Void>empty();
+          }
+          if (expectedVersion != null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+                "The user has been changed in the meantime!"));
+          }
+          return Mono.error(new OptimisticLockingFailureException("The user " + userId + " has been changed concurrently"));
+        })
+        .retryWhen(Retry.max(MAX_EDIT_ATTEMPTS - 1)
+            .filter(OptimisticLockingFailureException.class::isInstance)
+            .onRetryExhaustedThrow((retrySpec, signal) -> new ResponseStatusException(HttpStatus.CONFLICT,
+                "The user is being changed concurrently, please try again!", signal.failure())));
+  }
+
+  public Mono<UserRecord> logInUser(UserRecord credentials) {
+    return userRepository.findByUsername(credentials.getUsername())
+        .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+            "The user with the given username does not exist!")))
+        .flatMap(user -> {
+          if (!user.getName().equals(credentials.getName())) {
+            return Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "The name is incorrect!"));
+          }
+          user.setStatus(UserStatus.ONLINE);
+          return userRepository.updateStatus(user.getId(), UserStatus.ONLINE.ordinal()).thenReturn(user);
+        });
+  }
+
+  public Mono<Void> logoutUser(long userId) {
+    return userRepository.updateStatus(userId, UserStatus.OFFLINE.ordinal())
+        .flatMap(updated -> updated > 0 ? Mono.<Void>empty()
+            : Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "This user does not exist!")));
+  }
+}
@@ -0,0 +1,116 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Session Timeout Wheel
+ * Hashed timing wheel that tracks when the session of a user times out.
+ * Scheduling, rescheduling and cancelling a timeout are O(1): every session
+ * is put into the slot of its deadline tick and stale slot entries are
+ * dropped lazily when the wheel passes them. Advancing the wheel only visits
+ * the slots of the elapsed ticks, so there is no scheduled task per session.
+ *
+ * schedule and cancel may be called concurrently, advance must only be called
+ * by one thread at a time.
+ */
+class SessionTimeoutWheel {
+
+  private final long tickMillis;
+
+  private final List<Set<Long>> slots;
+
+  private final Map<Long, Long> deadlineTicks = new ConcurrentHashMap<>();
+
+  private long currentTick;
+
+  SessionTimeoutWheel(int slotCount, long tickMillis, long nowMillis) {
+    this.tickMillis = tickMillis;
+    this.slots = new ArrayList<>(slotCount);
+    for (int i = 0; i < slotCount; i++) {
+      slots.add(ConcurrentHashMap.newKeySet());
+    }
+    this.currentTick = nowMillis / tickMillis;
+  }
+
+  /**
+   * Schedules (or moves) the timeout of the session of the user.
+   */
+  void schedule(long userId, long nowMillis, long timeoutMillis) {
+    // round up -> a session never times out early
+    long deadlineTick = (nowMillis + timeoutMillis + tickMillis - 1) / tickMillis;
+    deadlineTicks.put(userId, deadlineTick);
+    slotOf(deadlineTick).add(userId);
+  }
+
+  void cancel(long userId) {
+    deadlineTicks.remove(userId);
+  }
+
+  void clear() {
+    deadlineTicks.clear();
+    slots.forEach(Set::clear);
+  }
+
+  boolean isScheduled(long userId) {
+    return deadlineTicks.containsKey(userId);
+  }
+
+  /**
+   * @return the ids of all users whose session has not timed out yet
+   */
+  Set<Long> getScheduledUserIds() {
+    return deadlineTicks.keySet();
+  }
+
+  /**
+   * Moves the wheel forward to the given time.
+   *
+   * @return the ids of the users whose session timed out in the meantime
+   */
+  List<Long> advance(long nowMillis) {
+    List<Long> expired = new ArrayList<>();
+    long targetTick = nowMillis / tickMillis;
+    // after one full turn every slot has been visited
+    long firstTick = Math.max(currentTick + 1, targetTick - slots.size() + 1);
+    for (long tick = firstTick; tick <= targetTick; tick++) {
+      expireSlot(tick, targetTick, expired);
+    }
+    currentTick = Math.max(currentTick, targetTick);
+    return expired;
+  }
+
+  private void expireSlot(long tick, long targetTick, List<Long> expired) {
+    Set<Long> slot = slotOf(tick);
+    for (Long userId : slot) {
+      Long deadlineTick = deadlineTicks.get(userId);
+      if (deadlineTick != null && deadlineTick <= targetTick) {
+        // only expire if the session has not been rescheduled in the meantime
+        if (deadlineTicks.remove(userId, deadlineTick)) {
+          expired.add(userId);
+        }
+        removeFromSlot(userId, slot);
+      } else if (deadlineTick == null || slotOf(deadlineTick) != slot) {
+        // cancelled or moved to another slot
+        removeFromSlot(userId, slot);
+      }
+      // otherwise the deadline lies in a later turn of the wheel
+    }
+  }
+
+  private void removeFromSlot(Long userId, Set<Long> slot) {
+    slot.remove(userId);
+    // a concurrent schedule might have put the user into this slot again
+    Long deadlineTick = deadlineTicks.get(userId);
+    if (deadlineTick != null && slotOf(deadlineTick) == slot) {
+      slot.add(userId);
+    }
+  }
+
+  private Set<Long> slotOf(long tick) {
+    return slots.get((int) (tick % slots.size()));
+  }
+}
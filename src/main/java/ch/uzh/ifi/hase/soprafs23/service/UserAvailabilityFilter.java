@@ -0,0 +1,68 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * User Availability Filter
+ * Bloom filters over all usernames and names. Most uniqueness checks are
+ * for values nobody uses yet, and those are answered from memory: only a
+ * "maybe taken" has to be confirmed by the database. The filters are built
+ * by the UserIndexInitializer; until then every value counts as maybe
+ * taken. Values are never removed (a changed username stays in the filter),
+ * which only causes an occasional unnecessary database check.
+ */
+@Component
+public class UserAvailabilityFilter {
+
+  private final BloomFilter usernames;
+
+  private final BloomFilter names;
+
+  private volatile boolean ready;
+
+  public UserAvailabilityFilter(@Value("${users.availability.expected-users:1000000}") long expectedUsers,
+      @Value("${users.availability.false-positive-rate:0.01}") double falsePositiveRate) {
+    this.usernames = new BloomFilter(expectedUsers, falsePositiveRate);
+    this.names = new BloomFilter(expectedUsers, falsePositiveRate);
+  }
+
+  /**
+   * @return false if no user has the username, true if one might have it
+   */
+  public boolean mightContainUsername(String username) {
+    return !ready || username == null || usernames.mightContain(username);
+  }
+
+  /**
+   * @return false if no user has the name, true if one might have it
+   */
+  public boolean mightContainName(String name) {
+    return !ready || name == null || names.mightContain(name);
+  }
+
+  public void putUsername(String username) {
+    if (username != null) {
+      usernames.put(username);
+    }
+  }
+
+  public void putName(String name) {
+    if (name != null) {
+      names.put(name);
+    }
+  }
+
+  /**
+   * Called once all existing users have been added.
+   */
+  public void markReady() {
+    ready = true;
+  }
+
+  public void clear() {
+    ready = false;
+    usernames.clear();
+    names.clear();
+  }
+}
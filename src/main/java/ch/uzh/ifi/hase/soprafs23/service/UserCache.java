@@ -0,0 +1,133 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User Cache
+ * Bounded in-process cache of users keyed by id, plus an index from username
+ * to id. Entries are evicted by size and by age. The cache hands out and
+ * stores copies, so callers can modify the returned users without touching
+ * the cached state. It is kept up to date by the UserService on every write.
+ * Its hit, miss and eviction counts are published as cache.* metrics.
+ */
+@Component
+public class UserCache implements MeterBinder {
+
+  private final Cache<Long, User> usersById;
+
+  private final Cache<String, Long> userIdsByUsername;
+
+  public UserCache(@Value("${users.cache.maximum-size:10000}") long maximumSize,
+      @Value("${users.cache.expire-after-write-seconds:600}") long expireAfterWriteSeconds) {
+    this.usersById = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+        .recordStats()
+        .build();
+    this.userIdsByUsername = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * @return a copy of the cached user or null if it is not cached
+   */
+  public User getById(long id) {
+    User user = usersById.getIfPresent(id);
+    return user == null ? null : copyOf(user);
+  }
+
+  /**
+   * @return a copy of the cached user with the given username or null if it is
+   *         not cached
+   */
+  public User getByUsername(String username) {
+    Long id = userIdsByUsername.getIfPresent(username);
+    if (id == null) {
+      return null;
+    }
+    User user = getById(id);
+    // the username might have changed since the index entry was written
+    return user != null && username.equals(user.getUsername()) ? user : null;
+  }
+
+  /**
+   * Caches the user unless a newer version of it is cached already: a read
+   * that loaded the row before an edit committed may only put it after the
+   * edit has put the new version.
+   */
+  public void put(User user) {
+    User copy = copyOf(user);
+    User cached = usersById.asMap().compute(user.getId(),
+        (id, current) -> current != null && isOlder(copy, current) ? current : copy);
+    if (cached == copy) {
+      userIdsByUsername.put(user.getUsername(), user.getId());
+    }
+  }
+
+  public void evict(User user) {
+    if (user.getId() != null) {
+      usersById.invalidate(user.getId());
+    }
+    if (user.getUsername() != null) {
+      userIdsByUsername.invalidate(user.getUsername());
+    }
+  }
+
+  public void clear() {
+    usersById.invalidateAll();
+    userIdsByUsername.invalidateAll();
+  }
+
+  /**
+   * @return hit, miss and eviction counts of the lookups by id
+   */
+  public CacheStats getByIdStats() {
+    return usersById.stats();
+  }
+
+  /**
+   * @return hit, miss and eviction counts of the lookups by username
+   */
+  public CacheStats getByUsernameStats() {
+    return userIdsByUsername.stats();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, usersById, "usersById");
+    CaffeineCacheMetrics.monitor(registry, userIdsByUsername, "userIdsByUsername");
+  }
+
+  private static boolean isOlder(User user, User other) {
+    return user.getVersion() != null && other.getVersion() != null && user.getVersion() < other.getVersion();
+  }
+
+  /**
+   * @return a detached copy of the user with all its fields
+   */
+  static User copyOf(User user) {
+    User copy = new User();
+    copy.setId(user.getId());
+    copy.setName(user.getName());
+    copy.setUsername(user.getUsername());
+    copy.setToken(user.getToken());
+    copy.setStatus(user.getStatus());
+    copy.setCreationDate(user.getCreationDate());
+    copy.setBirthDate(user.getBirthDate());
+    copy.setVersion(user.getVersion());
+    return copy;
+  }
+}
@@ -0,0 +1,36 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserEventGetDTO;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * User Change Counter
+ * Counts the changes of the user collection: every create, edit, login and
+ * logout that the UserService and UserPresence announce as a user event.
+ * The events are published after the commit, so a copy of the collection
+ * read after getVersion() is never older than the count. The counter starts
+ * at a random epoch, so counts from before a restart never match.
+ */
+@Component
+public class UserChangeCounter {
+
+  private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+  private final AtomicLong count = new AtomicLong();
+
+  @EventListener
+  public void onUserEvent(UserEventGetDTO event) {
+    count.incrementAndGet();
+  }
+
+  /**
+   * @return a value that changes whenever any user changes
+   */
+  public String getVersion() {
+    return epoch + "-" + count.get();
+  }
+}
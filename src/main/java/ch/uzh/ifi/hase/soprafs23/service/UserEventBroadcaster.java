@@ -0,0 +1,247 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserEventType;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserEventGetDTO;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * User Event Broadcaster
+ * Fans the user events published by the UserService and UserPresence out to
+ * all Server-Sent Events subscribers. Publishing never blocks: every
+ * subscriber has its own bounded buffer, drained by a sender thread of its
+ * own while it has events, so a client that stops reading only blocks its
+ * own sends. Events of the same user and type are coalesced in the buffer
+ * (only the latest one is kept, so an ONLINE event never replaces a pending
+ * EDITED one), and if a slow subscriber falls further behind than the buffer
+ * size its oldest events are dropped. A subscriber whose send has not
+ * completed within the send timeout is removed and its emitter completed.
+ */
+@Component
+public class UserEventBroadcaster implements MeterBinder {
+
+  /**
+   * Interval in which sends are checked against the send timeout.
+   */
+  static final long SEND_TIMEOUT_CHECK_MILLIS = 1000;
+
+  private static final long NOT_SENDING = Long.MIN_VALUE;
+
+  private final Logger log = LoggerFactory.getLogger(UserEventBroadcaster.class);
+
+  private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+  private final int bufferSize;
+
+  private final long subscriptionTimeoutMillis;
+
+  private final long sendTimeoutNanos;
+
+  private final ExecutorService senders;
+
+  private final LongAdder droppedEvents = new LongAdder();
+
+  public UserEventBroadcaster(@Value("${users.events.buffer-size:256}") int bufferSize,
+      @Value("${users.events.subscription-timeout-ms:1800000}") long subscriptionTimeoutMillis,
+      @Value("${users.events.send-timeout-ms:10000}") long sendTimeoutMillis) {
+    this.bufferSize = bufferSize;
+    this.subscriptionTimeoutMillis = subscriptionTimeoutMillis;
+    this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+    AtomicInteger threadCount = new AtomicInteger();
+    // a thread per draining subscriber, idle threads are released after a minute
+    this.senders = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "user-events-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public SseEmitter subscribe() {
+    return subscribe(new SseEmitter(subscriptionTimeoutMillis));
+  }
+
+  SseEmitter subscribe(SseEmitter emitter) {
+    Subscriber subscriber = new Subscriber(emitter);
+    emitter.onCompletion(() -> subscribers.remove(subscriber));
+    emitter.onTimeout(() -> subscribers.remove(subscriber));
+    emitter.onError(e -> subscribers.remove(subscriber));
+    subscribers.add(subscriber);
+    return emitter;
+  }
+
+  @EventListener
+  public void publish(UserEventGetDTO event) {
+    for (Subscriber subscriber : subscribers) {
+      subscriber.offer(event);
+    }
+  }
+
+  @Scheduled(fixedRate = SEND_TIMEOUT_CHECK_MILLIS)
+  public void expireStalledSends() {
+    expireStalledSends(System.nanoTime());
+  }
+
+  void expireStalledSends(long nowNanos) {
+    for (Subscriber subscriber : subscribers) {
+      long sendStartedNanos = subscriber.sendStartedNanos;
+      if (sendStartedNanos != NOT_SENDING && nowNanos - sendStartedNanos > sendTimeoutNanos
+          && subscribers.remove(subscriber)) {
+        log.debug("Dropping user event subscriber, a send did not complete within the timeout");
+        // completing waits for the blocked send to give up, so it must not hold up this thread
+        senders.execute(() -> subscriber.emitter.completeWithError(new TimeoutException("User event send timed out")));
+      }
+    }
+  }
+
+  public int getSubscriberCount() {
+    return subscribers.size();
+  }
+
+  /**
+   * @return the number of events dropped because a subscriber fell behind
+   */
+  public long getDroppedEventCount() {
+    return droppedEvents.sum();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("users.events.subscribers", this, UserEventBroadcaster::getSubscriberCount)
+        .description("Number of Server-Sent Events subscribers")
+        .register(registry);
+    FunctionCounter.builder("users.events.dropped", this, UserEventBroadcaster::getDroppedEventCount)
+        .description("Events dropped because a subscriber fell behind")
+        .register(registry);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    senders.shutdownNow();
+  }
+
+  private class Subscriber {
+
+    private final SseEmitter emitter;
+
+    // latest event per user and type, oldest first
+    private final LinkedHashMap<EventKey, UserEventGetDTO> buffer = new LinkedHashMap<>();
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private volatile long sendStartedNanos = NOT_SENDING;
+
+    private Subscriber(SseEmitter emitter) {
+      this.emitter = emitter;
+    }
+
+    private void offer(UserEventGetDTO event) {
+      synchronized (buffer) {
+        // re-inserting moves the event to the end -> the buffer stays ordered by time
+        EventKey key = new EventKey(event.getUserId(), event.getType());
+        buffer.remove(key);
+        buffer.put(key, event);
+        if (buffer.size() > bufferSize) {
+          Iterator<EventKey> oldest = buffer.keySet().iterator();
+          oldest.next();
+          oldest.remove();
+          droppedEvents.increment();
+        }
+      }
+      if (draining.compareAndSet(false, true)) {
+        senders.execute(this::drain);
+      }
+    }
+
+    private void drain() {
+      do {
+        List<UserEventGetDTO> events;
+        synchronized (buffer) {
+          events = new ArrayList<>(buffer.values());
+          buffer.clear();
+        }
+        for (UserEventGetDTO event : events) {
+          if (!subscribers.contains(this)) {
+            // removed after a timed out send
+            return;
+          }
+          sendStartedNanos = System.nanoTime();
+          try {
+            emitter.send(SseEmitter.event().name(event.getType().name()).data(event));
+          } catch (IOException | IllegalStateException e) {
+            // the client went away
+            log.debug("Dropping user event subscriber", e);
+            subscribers.remove(this);
+            emitter.completeWithError(e);
+            return;
+          } finally {
+            sendStartedNanos = NOT_SENDING;
+          }
+        }
+        draining.set(false);
+        // events offered after the copy above but before the flag was reset
+      } while (hasBuffered() && draining.compareAndSet(false, true));
+    }
+
+    private boolean hasBuffered() {
+      synchronized (buffer) {
+        return !buffer.isEmpty();
+      }
+    }
+  }
+
+  private static final class EventKey {
+
+    private final Long userId;
+
+    private final UserEventType type;
+
+    private EventKey(Long userId, UserEventType type) {
+      this.userId = userId;
+      this.type = type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof EventKey)) {
+        return false;
+      }
+      EventKey other = (EventKey) o;
+      return Objects.equals(userId, other.userId) && type == other.type;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(userId, type);
+    }
+  }
+}
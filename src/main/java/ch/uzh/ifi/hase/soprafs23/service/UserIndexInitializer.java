@@ -0,0 +1,101 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.stream.Stream;
+
+/**
+ * User Index Initializer
+ * Fills the in-memory user indexes from the USER table once all beans are
+ * created, i.e. before the web server accepts the first request. Users that
+ * are ONLINE in the table get a fresh session, which times out unless they
+ * send heartbeats. The table is
+ * streamed, so the warm-up needs no more memory than the indexes themselves.
+ * If the token index is loaded on demand, only the ONLINE users are read
+ * (through the status index) before startup completes, and the availability
+ * filter and the search index are built in the background.
+ */
+@Component
+public class UserIndexInitializer implements SmartInitializingSingleton {
+
+  private final Logger log = LoggerFactory.getLogger(UserIndexInitializer.class);
+
+  private final UserRepository userRepository;
+
+  private final TransactionTemplate transactionTemplate;
+
+  private final UserTokenIndex userTokenIndex;
+
+  private final UserPresence userPresence;
+
+  private final UserAvailabilityFilter userAvailabilityFilter;
+
+  private final UserSearchIndex userSearchIndex;
+
+  public UserIndexInitializer(@Qualifier("userRepository") UserRepository userRepository,
+      PlatformTransactionManager transactionManager, UserTokenIndex userTokenIndex, UserPresence userPresence,
+      UserAvailabilityFilter userAvailabilityFilter, UserSearchIndex userSearchIndex) {
+    this.userRepository = userRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.transactionTemplate.setReadOnly(true);
+    this.userTokenIndex = userTokenIndex;
+    this.userPresence = userPresence;
+    this.userAvailabilityFilter = userAvailabilityFilter;
+    this.userSearchIndex = userSearchIndex;
+  }
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    long start = System.nanoTime();
+    boolean preloaded = userTokenIndex.isPreloaded();
+    transactionTemplate.executeWithoutResult(status -> {
+      if (preloaded) {
+        indexAllUsers(true);
+      }
+      try (Stream<Long> onlineUserIds = userRepository.streamIdsByStatus(UserStatus.ONLINE)) {
+        onlineUserIds.forEach(userPresence::track);
+      }
+    });
+    log.info("Indexed {} user tokens and {} sessions in {} ms", userTokenIndex.size(),
+        userPresence.getOnlineUserIds().size(), (System.nanoTime() - start) / 1_000_000);
+
+    if (!preloaded) {
+      // until the scan is done every uniqueness check goes to the database
+      Thread thread = new Thread(this::indexAllUsersInBackground, "user-index-initializer");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  private void indexAllUsersInBackground() {
+    long start = System.nanoTime();
+    try {
+      transactionTemplate.executeWithoutResult(status -> indexAllUsers(false));
+      log.info("Built the user availability filter and search index in {} ms", (System.nanoTime() - start) / 1_000_000);
+    } catch (RuntimeException e) {
+      log.error("Building the user availability filter and search index failed", e);
+    }
+  }
+
+  private void indexAllUsers(boolean withTokens) {
+    try (Stream<UserRepository.IndexEntry> users = userRepository.streamAllIndexEntries()) {
+      users.forEach(user -> {
+        if (withTokens) {
+          userTokenIndex.put(user.getToken(), user.getId());
+        }
+        userAvailabilityFilter.putUsername(user.getUsername());
+        userAvailabilityFilter.putName(user.getName());
+        userSearchIndex.add(user.getId(), user.getUsername(), user.getName());
+      });
+    }
+    userAvailabilityFilter.markReady();
+  }
+}
@@ -0,0 +1,213 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserEventType;
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserEventGetDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * User Presence
+ * In-memory presence table (ONLINE/OFFLINE) of the users. Status changes are
+ * visible to readers immediately and written to the USER table behind the
+ * scenes: a scheduled flush writes all changes since the last flush in one
+ * update statement per status, the last change of a user wins. Pending
+ * changes are drained when the application shuts down.
+ *
+ * Online users have to send heartbeats. A user that misses them for the
+ * heartbeat timeout is set OFFLINE, tracked by a SessionTimeoutWheel.
+ * Every change of a status is published as an ONLINE/OFFLINE user event.
+ */
+@Component
+public class UserPresence {
+
+  /**
+   * Largest number of ids passed to one update statement.
+   */
+  static final int FLUSH_CHUNK_SIZE = 1000;
+
+  /**
+   * Resolution in which session timeouts are detected.
+   */
+  static final long TICK_MILLIS = 1000;
+
+  private final Logger log = LoggerFactory.getLogger(UserPresence.class);
+
+  private final UserRepository userRepository;
+
+  private final TransactionTemplate transactionTemplate;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  private final Map<Long, UserStatus> statuses = new ConcurrentHashMap<>();
+
+  private final Map<Long, UserStatus> pendingStatuses = new ConcurrentHashMap<>();
+
+  private final long heartbeatTimeoutMillis;
+
+  private final SessionTimeoutWheel sessionTimeouts;
+
+  public UserPresence(@Qualifier("userRepository") UserRepository userRepository,
+      PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+      @Value("${users.presence.heartbeat-timeout-seconds:60}") long heartbeatTimeoutSeconds) {
+    this.userRepository = userRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.eventPublisher = eventPublisher;
+    this.heartbeatTimeoutMillis = heartbeatTimeoutSeconds * 1000;
+    // one turn of the wheel covers the timeout -> every slot is visited once per timeout
+    int slotCount = (int) Math.max(1, heartbeatTimeoutMillis / TICK_MILLIS + 1);
+    this.sessionTimeouts = new SessionTimeoutWheel(slotCount, TICK_MILLIS, System.currentTimeMillis());
+  }
+
+  /**
+   * Marks the user ONLINE until it misses its heartbeats.
+   */
+  public void heartbeat(long userId) {
+    heartbeat(userId, System.currentTimeMillis());
+  }
+
+  void heartbeat(long userId, long nowMillis) {
+    sessionTimeouts.schedule(userId, nowMillis, heartbeatTimeoutMillis);
+    if (statuses.get(userId) != UserStatus.ONLINE) {
+      setStatus(userId, UserStatus.ONLINE);
+    }
+  }
+
+  /**
+   * Starts tracking the session of a user that is already ONLINE in the
+   * database, e.g. right after its creation or when the application starts.
+   */
+  public void track(long userId) {
+    sessionTimeouts.schedule(userId, System.currentTimeMillis(), heartbeatTimeoutMillis);
+    statuses.putIfAbsent(userId, UserStatus.ONLINE);
+  }
+
+  public void logout(long userId) {
+    sessionTimeouts.cancel(userId);
+    setStatus(userId, UserStatus.OFFLINE);
+  }
+
+  /**
+   * @return whether the user has an active session, i.e. is ONLINE and sends
+   *         heartbeats
+   */
+  public boolean isTracked(long userId) {
+    return sessionTimeouts.isScheduled(userId);
+  }
+
+  /**
+   * @return the ids of all ONLINE users, read from memory
+   */
+  public Set<Long> getOnlineUserIds() {
+    return Collections.unmodifiableSet(sessionTimeouts.getScheduledUserIds());
+  }
+
+  @Scheduled(fixedRate = TICK_MILLIS)
+  public void expireSessions() {
+    expireSessions(System.currentTimeMillis());
+  }
+
+  synchronized void expireSessions(long nowMillis) {
+    List<Long> expired = sessionTimeouts.advance(nowMillis);
+    for (Long userId : expired) {
+      // a heartbeat since advance has rescheduled the session and keeps the user ONLINE
+      setStatus(userId, UserStatus.OFFLINE, true);
+    }
+    if (!expired.isEmpty()) {
+      log.debug("{} sessions timed out", expired.size());
+    }
+  }
+
+  private void setStatus(long userId, UserStatus status) {
+    setStatus(userId, status, false);
+  }
+
+  /**
+   * @param unlessTracked keep the current status if the session of the user is
+   *                      scheduled, checked under the same lock as the change
+   */
+  private void setStatus(long userId, UserStatus status, boolean unlessTracked) {
+    UserStatus[] previousStatus = new UserStatus[1];
+    // both maps change under the lock of the user's entry, so concurrent changes
+    // (heartbeat vs. expireSessions) leave the same last status in memory and pending.
+    // A heartbeat schedules its session before it reads the status: either the
+    // expiry sees the session scheduled or the heartbeat sees OFFLINE and sets ONLINE.
+    UserStatus newStatus = statuses.compute(userId, (id, current) -> {
+      previousStatus[0] = current;
+      if (unlessTracked && sessionTimeouts.isScheduled(id)) {
+        return current;
+      }
+      pendingStatuses.put(id, status);
+      return status;
+    });
+    if (newStatus == status && previousStatus[0] != status) {
+      UserEventType type = status == UserStatus.ONLINE ? UserEventType.ONLINE : UserEventType.OFFLINE;
+      eventPublisher.publishEvent(new UserEventGetDTO(type, userId, null));
+    }
+  }
+
+  /**
+   * @return the current status of the user, or the given persisted status if
+   *         it has not changed since the application started
+   */
+  public UserStatus getStatus(long userId, UserStatus persistedStatus) {
+    return statuses.getOrDefault(userId, persistedStatus);
+  }
+
+  @Scheduled(fixedDelayString = "${users.presence.flush-interval-ms:1000}")
+  public synchronized void flush() {
+    if (pendingStatuses.isEmpty()) {
+      return;
+    }
+    Map<UserStatus, List<Long>> userIdsByStatus = new EnumMap<>(UserStatus.class);
+    for (Long userId : pendingStatuses.keySet()) {
+      // removing hands out the latest status, later changes stay pending
+      UserStatus status = pendingStatuses.remove(userId);
+      if (status != null) {
+        userIdsByStatus.computeIfAbsent(status, s -> new ArrayList<>()).add(userId);
+      }
+    }
+
+    try {
+      transactionTemplate.executeWithoutResult(transaction -> userIdsByStatus.forEach((status, userIds) -> {
+        for (int from = 0; from < userIds.size(); from += FLUSH_CHUNK_SIZE) {
+          userRepository.updateStatus(userIds.subList(from, Math.min(from + FLUSH_CHUNK_SIZE, userIds.size())), status);
+        }
+      }));
+    } catch (RuntimeException e) {
+      // retry with the next flush unless the status has changed in the meantime
+      userIdsByStatus.forEach((status, userIds) -> userIds.forEach(id -> pendingStatuses.putIfAbsent(id, status)));
+      log.error("Flushing the presence of {} users failed, will retry", pendingStatuses.size(), e);
+      return;
+    }
+    log.debug("Flushed the presence of {} users", userIdsByStatus.values().stream().mapToInt(List::size).sum());
+  }
+
+  @PreDestroy
+  public void drain() {
+    flush();
+  }
+
+  public void clear() {
+    statuses.clear();
+    pendingStatuses.clear();
+    sessionTimeouts.clear();
+  }
+}
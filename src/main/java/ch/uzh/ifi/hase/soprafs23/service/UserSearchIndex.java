@@ -0,0 +1,99 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * User Search Index
+ * Case-insensitive prefix index over the username, the name and the single
+ * words of the name of every user. The terms are kept in a sorted map, so a
+ * search is a range scan that stops after the requested number of users:
+ * exact matches come first, then the other matches in alphabetical order.
+ * It is filled at startup (see UserIndexInitializer) and kept in sync by the
+ * UserService.
+ */
+@Component
+public class UserSearchIndex {
+
+  /**
+   * Largest number of users a search may return.
+   */
+  public static final int MAX_LIMIT = 100;
+
+  // sorts before every other character -> "bob" + SEPARATOR comes before "bobby"
+  private static final char SEPARATOR = '\u0000';
+
+  private final ConcurrentNavigableMap<String, Long> userIdsByTerm = new ConcurrentSkipListMap<>();
+
+  public void add(long userId, String username, String name) {
+    for (String term : terms(username, name)) {
+      userIdsByTerm.put(term + SEPARATOR + userId, userId);
+    }
+  }
+
+  public void remove(long userId, String username, String name) {
+    for (String term : terms(username, name)) {
+      userIdsByTerm.remove(term + SEPARATOR + userId);
+    }
+  }
+
+  /**
+   * @return the ids of at most limit users with a term starting with the query
+   */
+  public List<Long> search(String query, int limit) {
+    String prefix = normalize(query);
+    if (prefix.isEmpty() || limit < 1) {
+      return Collections.emptyList();
+    }
+    Set<Long> userIds = new LinkedHashSet<>();
+    for (Long userId : userIdsByTerm.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+      userIds.add(userId);
+      if (userIds.size() == limit) {
+        break;
+      }
+    }
+    return new ArrayList<>(userIds);
+  }
+
+  /**
+   * @return the number of indexed terms
+   */
+  public int size() {
+    return userIdsByTerm.size();
+  }
+
+  public void clear() {
+    userIdsByTerm.clear();
+  }
+
+  private static Set<String> terms(String username, String name) {
+    Set<String> terms = new LinkedHashSet<>();
+    if (username != null) {
+      terms.add(normalize(username));
+    }
+    if (name != null) {
+      String normalizedName = normalize(name);
+      terms.add(normalizedName);
+      // "Firstname Lastname" is also found by "last"
+      for (String word : normalizedName.split("\\s+")) {
+        if (!word.isEmpty()) {
+          terms.add(word);
+        }
+      }
+    }
+    terms.remove("");
+    return terms;
+  }
+
+  private static String normalize(String value) {
+    return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+  }
+}
@@ -1,24 +1,45 @@
 package ch.uzh.ifi.hase.soprafs23.service;
 
+import ch.uzh.ifi.hase.soprafs23.constant.UserEventType;
 import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs23.entity.User;
 import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserEventGetDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
 import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.mapper.DTOMapper;
 
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 
 /**
  * User Service
@@ -29,29 +50,216 @@ import java.time.format.DateTimeFormatter;
  */
 @Service
 @Transactional
+@Timed("users.service")
 public class UserService {
 
+  /**
+   * Largest page size a client may request with keyset pagination.
+   */
+  public static final int MAX_PAGE_SIZE = 1000;
+
+  /**
+   * Largest number of users that can be created with one batch request.
+   */
+  public static final int MAX_BATCH_SIZE = 5000;
+
+  /**
+   * Users of a batch are flushed in chunks of this size. It matches
+   * hibernate.jdbc.batch_size and the allocation size of the user sequence.
+   */
+  static final int BATCH_CHUNK_SIZE = 50;
+
   private final Logger log = LoggerFactory.getLogger(UserService.class);
 
   private final UserRepository userRepository;
 
+  private final UserCache userCache;
+
+  private final UserTokenIndex userTokenIndex;
+
+  private final UserPresence userPresence;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  private final UserAvailabilityFilter userAvailabilityFilter;
+
+  private final UserSearchIndex userSearchIndex;
+
+  private final UserChangeCounter userChangeCounter;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
   @Autowired
-  public UserService(@Qualifier("userRepository") UserRepository userRepository) {
+  public UserService(@Qualifier("userRepository") UserRepository userRepository, UserCache userCache,
+      UserTokenIndex userTokenIndex, UserPresence userPresence, ApplicationEventPublisher eventPublisher,
+      UserAvailabilityFilter userAvailabilityFilter, UserSearchIndex userSearchIndex,
+      UserChangeCounter userChangeCounter) {
     this.userRepository = userRepository;
+    this.userCache = userCache;
+    this.userTokenIndex = userTokenIndex;
+    this.userPresence = userPresence;
+    this.eventPublisher = eventPublisher;
+    this.userAvailabilityFilter = userAvailabilityFilter;
+    this.userSearchIndex = userSearchIndex;
+    this.userChangeCounter = userChangeCounter;
   }
 
-  public List<User> getUsers() {
-    return this.userRepository.findAll();
+  /**
+   * @return a copy of the user that is not managed by the persistence context
+   *         (open in view), so callers can change it without those changes
+   *         being flushed
+   */
+  @Transactional(readOnly = true)
+  public User getUser(long userId) {
+    User user = this.userCache.getById(userId);
+    if (user == null) {
+      User loadedUser = this.userRepository.findById(userId);
+      if (loadedUser == null) {
+        throw new ResponseStatusException(HttpStatus.NOT_FOUND, "This user does not exist!");
+      }
+      this.userCache.put(loadedUser);
+      user = UserCache.copyOf(loadedUser);
+    }
+    user.setStatus(userPresence.getStatus(userId, user.getStatus()));
+    return user;
   }
 
-  public User getUser(long userId) {
-    User user = this.userRepository.findById(userId);
+  /**
+   * @return the strong ETag of the user: it changes with every update of the
+   *         user (its version) and with its presence status. Cached users are
+   *         answered without a transaction or database access.
+   */
+  @Transactional(propagation = Propagation.SUPPORTS)
+  public String getUserETag(long userId) {
+    User user = getUser(userId);
+    return userId + "-" + user.getVersion() + "-" + user.getStatus();
+  }
+
+  /**
+   * @return the version encoded in an ETag of the given user (see
+   *         getUserETag, the ETags of the binary representations carry the
+   *         format as suffix), or null if the ETag does not belong to the user
+   */
+  public static Long getVersionFromETag(long userId, String eTag) {
+    String value = eTag.trim();
+    if (value.length() < 2 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"') {
+      return null;
+    }
+    String[] parts = value.substring(1, value.length() - 1).split("-");
+    if (parts.length < 3 || parts.length > 4 || !parts[0].equals(Long.toString(userId))
+        || !parts[1].matches("[0-9]{1,18}")) {
+      return null;
+    }
+    return Long.valueOf(parts[1]);
+  }
+
+  /**
+   * @return the strong ETag of the user collection, which changes whenever
+   *         any user changes. Read it before the users.
+   */
+  public String getUsersETag() {
+    return userChangeCounter.getVersion();
+  }
+
+  /**
+   * Read path of the API: returns the users already in their API
+   * representation, read by a projection query.
+   */
+  @Transactional(readOnly = true)
+  public List<UserGetDTO> getUserGetDTOs() {
+    List<UserGetDTO> users = this.userRepository.findAllUserGetDTOs();
+    users.forEach(this::applyPresence);
+    return users;
+  }
+
+  @Transactional(readOnly = true)
+  public UserGetDTO getUserGetDTO(long userId) {
+    // single profiles are hot -> a cached user is mapped, otherwise only the
+    // fields of the DTO are read (no entity, no token)
+    User cachedUser = this.userCache.getById(userId);
+    if (cachedUser != null) {
+      cachedUser.setStatus(userPresence.getStatus(userId, cachedUser.getStatus()));
+      return DTOMapper.INSTANCE.convertEntityToUserGetDTO(cachedUser);
+    }
+    UserGetDTO user = this.userRepository.findUserGetDTOById(userId);
     if (user == null) {
       throw new ResponseStatusException(HttpStatus.NOT_FOUND, "This user does not exist!");
     }
+    applyPresence(user);
     return user;
   }
 
+  /**
+   * Returns at most limit users whose id is greater than the given cursor,
+   * ordered by id. The id of the last returned user is the cursor for the next
+   * page.
+   */
+  @Transactional(readOnly = true)
+  public List<UserGetDTO> getUserGetDTOs(long after, int limit) {
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          String.format("The limit has to be between 1 and %d!", MAX_PAGE_SIZE));
+    }
+    List<UserGetDTO> users = this.userRepository.findUserGetDTOsAfter(after, PageRequest.of(0, limit));
+    users.forEach(this::applyPresence);
+    return users;
+  }
+
+  /**
+   * @return at most limit users whose username, name or a word of the name
+   *         starts with the query, exact matches first. The matches are found
+   *         in the in-memory UserSearchIndex, only their profiles are read by id.
+   */
+  @Transactional(readOnly = true)
+  public List<UserGetDTO> searchUserGetDTOs(String query, int limit) {
+    if (limit < 1 || limit > UserSearchIndex.MAX_LIMIT) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          String.format("The limit has to be between 1 and %d!", UserSearchIndex.MAX_LIMIT));
+    }
+    List<Long> userIds = userSearchIndex.search(query, limit);
+    if (userIds.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Map<Long, UserGetDTO> usersById = new HashMap<>();
+    for (UserGetDTO user : userRepository.findUserGetDTOsByIdIn(userIds)) {
+      usersById.put(user.getId(), user);
+    }
+    // keep the ranking of the index
+    List<UserGetDTO> users = new ArrayList<>(userIds.size());
+    for (Long userId : userIds) {
+      UserGetDTO user = usersById.get(userId);
+      if (user != null) {
+        applyPresence(user);
+        users.add(user);
+      }
+    }
+    return users;
+  }
+
+  /**
+   * Hands every user to the consumer, ordered by id. The rows are fetched in
+   * batches and projected straight into DTOs, so nothing accumulates in the
+   * persistence context however big the table is.
+   */
+  @Transactional(readOnly = true)
+  public void streamUserGetDTOs(Consumer<UserGetDTO> consumer) {
+    try (Stream<UserGetDTO> users = this.userRepository.streamAllUserGetDTOs()) {
+      users.forEach(user -> {
+        applyPresence(user);
+        consumer.accept(user);
+      });
+    }
+  }
+
+  /**
+   * The status in the USER table lags behind the presence table (see
+   * UserPresence) -> the latter is authoritative.
+   */
+  private void applyPresence(UserGetDTO user) {
+    user.setStatus(userPresence.getStatus(user.getId(), user.getStatus()));
+  }
+
   public User createUser(User newUser) {
     newUser.setToken(UUID.randomUUID().toString());
     newUser.setStatus(UserStatus.ONLINE);
@@ -61,54 +269,266 @@ public class UserService {
     // flush() is called
     newUser = userRepository.save(newUser);
     userRepository.flush();
+    // added before the commit: a concurrent registration must not miss it
+    userAvailabilityFilter.putUsername(newUser.getUsername());
+    userAvailabilityFilter.putName(newUser.getName());
+    cacheAfterCommit(newUser);
+    indexAfterCommit(Collections.singletonList(newUser));
 
     log.debug("Created Information for User: {}", newUser);
     return newUser;
   }
 
-	
+  /**
+   * Creates all given users that neither collide with an existing user nor with
+   * an earlier entry of the same batch. Uniqueness is checked with one query
+   * for the whole batch, the inserts are sent in JDBC batches and flushed once
+   * per chunk. The created users get their ids assigned in place.
+   *
+   * @return the reason of every rejected user, keyed by its index in newUsers
+   */
+  public Map<Integer, String> createUsers(List<User> newUsers) {
+    if (newUsers.size() > MAX_BATCH_SIZE) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          String.format("At most %d users can be created at once!", MAX_BATCH_SIZE));
+    }
+    // only values the availability filter cannot rule out are checked in the database
+    Set<String> usernames = new HashSet<>();
+    Set<String> names = new HashSet<>();
+    for (User newUser : newUsers) {
+      if (newUser.getUsername() != null && userAvailabilityFilter.mightContainUsername(newUser.getUsername())) {
+        usernames.add(newUser.getUsername());
+      }
+      if (newUser.getName() != null && userAvailabilityFilter.mightContainName(newUser.getName())) {
+        names.add(newUser.getName());
+      }
+    }
+
+    // one index-backed query per field instead of an OR that scans the table
+    Set<String> takenUsernames = new HashSet<>();
+    Set<String> takenNames = new HashSet<>();
+    if (!usernames.isEmpty()) {
+      takenUsernames.addAll(userRepository.findTakenUsernames(usernames));
+    }
+    if (!names.isEmpty()) {
+      takenNames.addAll(userRepository.findTakenNames(names));
+    }
+
+    Map<Integer, String> conflicts = new TreeMap<>();
+    List<User> created = new ArrayList<>(newUsers.size());
+    List<User> chunk = new ArrayList<>(BATCH_CHUNK_SIZE);
+    LocalDate creationDate = LocalDate.now();
+    for (int i = 0; i < newUsers.size(); i++) {
+      User newUser = newUsers.get(i);
+      if (newUser.getUsername() == null || newUser.getName() == null) {
+        conflicts.put(i, "The username and the name have to be provided!");
+        continue;
+      }
+      String conflict = getConflictMessage(takenUsernames.contains(newUser.getUsername()),
+          takenNames.contains(newUser.getName()));
+      if (conflict != null) {
+        conflicts.put(i, conflict);
+        continue;
+      }
+      // later entries of the batch must not reuse the values of this one
+      takenUsernames.add(newUser.getUsername());
+      takenNames.add(newUser.getName());
+
+      newUser.setToken(UUID.randomUUID().toString());
+      newUser.setStatus(UserStatus.ONLINE);
+      newUser.setCreationDate(creationDate);
+      userAvailabilityFilter.putUsername(newUser.getUsername());
+      userAvailabilityFilter.putName(newUser.getName());
+      created.add(newUser);
+      chunk.add(newUser);
+      if (chunk.size() == BATCH_CHUNK_SIZE) {
+        saveChunk(chunk);
+      }
+    }
+    saveChunk(chunk);
+    indexAfterCommit(created);
+
+    log.debug("Created {} users in a batch, rejected {}", newUsers.size() - conflicts.size(), conflicts.size());
+    return conflicts;
+  }
+
+  private void saveChunk(List<User> chunk) {
+    if (chunk.isEmpty()) {
+      return;
+    }
+    userRepository.saveAll(chunk);
+    userRepository.flush();
+    // the created users are not needed anymore -> keep the persistence context small
+    entityManager.clear();
+    chunk.clear();
+  }
+
+  /**
+   * Checks the credentials and marks the user as ONLINE. The status change is
+   * written to the database in the background by UserPresence, so the login
+   * itself only reads.
+   */
+  @Transactional(readOnly = true)
   public User logInUser(User user) {
-    User userToBeLoggedIn = userRepository.findByUsername(user.getUsername());
+    User userToBeLoggedIn = userCache.getByUsername(user.getUsername());
+    if (userToBeLoggedIn == null) {
+      User loadedUser = userRepository.findByUsername(user.getUsername());
+      if (loadedUser != null) {
+        userCache.put(loadedUser);
+        userToBeLoggedIn = UserCache.copyOf(loadedUser);
+      }
+    }
     if (userToBeLoggedIn == null) {
       throw new ResponseStatusException(HttpStatus.NOT_FOUND, "The user with the given username does not exist!");
     }
     if (!userToBeLoggedIn.getName().equals(user.getName())) {
       throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "The name is incorrect!");
     }
+    // the status is set on a copy, presence changes are written by the UserPresence
+    userPresence.heartbeat(userToBeLoggedIn.getId());
     userToBeLoggedIn.setStatus(UserStatus.ONLINE);
-    userToBeLoggedIn = userRepository.save(userToBeLoggedIn);
-    userRepository.flush();
     log.debug("Logged in User: {}", userToBeLoggedIn);
     return userToBeLoggedIn; 
   }
 
+  /**
+   * Marks the user as OFFLINE, see logInUser.
+   */
+  @Transactional(readOnly = true)
   public User logoutUser(long id){
-    User user = userRepository.findById(id);
-    if (user == null) {
-      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "This user does not exist!");
-    }
+    User user = getUser(id);
+    userPresence.logout(id);
     user.setStatus(UserStatus.OFFLINE);
-    user = userRepository.save(user);
-    userRepository.flush();
     log.debug("Logged out User: {}", user);
     return user;
   }
 
-  public void editUser(User user, UserPostDTO userChanges) {
-    checkIfUserNameIsUnique(userChanges.getUsername());
-    //only save the birthday if it has been set 
-    if (userChanges.getBirthDate() != null){
-      DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
-      LocalDate birthDate = LocalDate.parse(userChanges.getBirthDate());
-      birthDate.format(formatter);
-      user.setBirthDate(birthDate);
+  /**
+   * Keeps the session of the user alive. Only the first heartbeat of a session
+   * that is not tracked yet has to check that the user exists.
+   */
+  @Transactional(readOnly = true)
+  public void heartbeat(long userId) {
+    if (!userPresence.isTracked(userId)) {
+      getUser(userId);
+    }
+    userPresence.heartbeat(userId);
+  }
+
+  /**
+   * Answers the as-you-type check of the signup form. Usernames the
+   * availability filter rules out are answered from memory, without a
+   * transaction or a database connection.
+   */
+  @Transactional(propagation = Propagation.SUPPORTS)
+  public boolean isUsernameAvailable(String username) {
+    return !userAvailabilityFilter.mightContainUsername(username) || !userRepository.existsByUsername(username);
+  }
+
+  /**
+   * @return all ONLINE users. Who is online is known from memory, only their
+   *         profiles are read by id.
+   */
+  @Transactional(readOnly = true)
+  public List<UserGetDTO> getOnlineUserGetDTOs() {
+    List<Long> userIds = new ArrayList<>(userPresence.getOnlineUserIds());
+    Collections.sort(userIds);
+    List<UserGetDTO> users = new ArrayList<>(userIds.size());
+    for (int from = 0; from < userIds.size(); from += MAX_PAGE_SIZE) {
+      users.addAll(userRepository.findUserGetDTOsByIdIn(userIds.subList(from, Math.min(from + MAX_PAGE_SIZE, userIds.size()))));
     }
-    //only save the username if it has been set
-    if(userChanges.getUsername() != null){
+    users.forEach(this::applyPresence);
+    return users;
+  }
+
+  /**
+   * Applies the changes with one versioned update statement: it only succeeds
+   * if the user still has the version it was read with, so concurrent edits
+   * never overwrite each other silently. A taken username is reported by the
+   * unique constraint instead of a query ahead of the update.
+   *
+   * @param expectedVersion the version the client has seen (If-Match), or null
+   *                        to edit the current version
+   * @throws ObjectOptimisticLockingFailureException if the user has been
+   *                                                 changed concurrently and no
+   *                                                 version was expected, the
+   *                                                 edit can be retried
+   */
+  public void editUser(User user, UserPostDTO userChanges, Long expectedVersion) {
+    // the changes are written by the update statement only -> they are applied to
+    // a detached user, a managed one would be flushed (and its version bumped) first
+    if (expectedVersion != null && !expectedVersion.equals(user.getVersion())) {
+      // the cached copy may lag behind the database -> decide on the stored version
+      User storedUser = userRepository.findById(user.getId().longValue());
+      if (storedUser == null) {
+        throw new ResponseStatusException(HttpStatus.NOT_FOUND, "This user does not exist!");
+      }
+      if (!expectedVersion.equals(storedUser.getVersion())) {
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "The user has been changed in the meantime!");
+      }
+      user = UserCache.copyOf(storedUser);
+      user.setStatus(userPresence.getStatus(user.getId(), user.getStatus()));
+    }
+    // the old username must not resolve to this user anymore
+    userCache.evict(user);
+    String oldUsername = user.getUsername();
+    //only change the birthday if it has been set
+    if (userChanges.getBirthDate() != null) {
+      user.setBirthDate(LocalDate.parse(userChanges.getBirthDate()));
+    }
+    //only change the username if it has been set
+    if (userChanges.getUsername() != null) {
       user.setUsername(userChanges.getUsername());
-      user = userRepository.save(user);
-      userRepository.flush();
     }
+    int updated;
+    try {
+      updated = userRepository.updateProfile(user.getId(), user.getUsername(), user.getBirthDate(), user.getVersion());
+    }
+    catch (DataIntegrityViolationException e) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "The username provided is not unique. Please choose a diffrent username!");
+    }
+    if (updated == 0) {
+      if (expectedVersion != null) {
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "The user has been changed in the meantime!");
+      }
+      throw new ObjectOptimisticLockingFailureException(User.class, user.getId());
+    }
+    user.setVersion(user.getVersion() + 1);
+    User savedUser = user;
+    userAvailabilityFilter.putUsername(savedUser.getUsername());
+    cacheAfterCommit(savedUser);
+    AfterCommit.run(() -> {
+      userSearchIndex.remove(savedUser.getId(), oldUsername, savedUser.getName());
+      userSearchIndex.add(savedUser.getId(), savedUser.getUsername(), savedUser.getName());
+      publishEvent(UserEventType.EDITED, savedUser);
+    });
+  }
+
+  /**
+   * Adds newly created users to the token and search index, starts tracking
+   * their session and announces them once the surrounding transaction has
+   * committed.
+   */
+  private void indexAfterCommit(List<User> users) {
+    AfterCommit.run(() -> users.forEach(user -> {
+      userTokenIndex.put(user.getToken(), user.getId());
+      userSearchIndex.add(user.getId(), user.getUsername(), user.getName());
+      userPresence.track(user.getId());
+      publishEvent(UserEventType.CREATED, user);
+    }));
+  }
+
+  private void publishEvent(UserEventType type, User user) {
+    eventPublisher.publishEvent(new UserEventGetDTO(type, user.getId(), DTOMapper.INSTANCE.convertEntityToUserGetDTO(user)));
+  }
+
+  /**
+   * Writes the user to the cache once the surrounding transaction has
+   * committed. A rolled back write only drops the (possibly stale) entry.
+   */
+  private void cacheAfterCommit(User user) {
+    userCache.evict(user);
+    AfterCommit.run(() -> userCache.put(user));
   }
 
   /**
@@ -122,27 +542,33 @@ public class UserService {
    * @see User
    */
   private void checkIfUserExists(User userToBeCreated) {
-    User userByUsername = userRepository.findByUsername(userToBeCreated.getUsername());
-    User userByName = userRepository.findByName(userToBeCreated.getName());
+    // neither value can be taken -> no need to ask the database
+    if (!userAvailabilityFilter.mightContainUsername(userToBeCreated.getUsername())
+        && !userAvailabilityFilter.mightContainName(userToBeCreated.getName())) {
+      return;
+    }
+    List<String> takenFields = userRepository.findTakenFields(userToBeCreated.getUsername(), userToBeCreated.getName());
 
-    String baseErrorMessage = "The %s provided %s already taken. Therefore, the user could not be created!";
-    if (userByUsername != null && userByName != null) {
-      throw new ResponseStatusException(HttpStatus.CONFLICT,
-          String.format(baseErrorMessage, "username and the name", "are"));
-    } else if (userByUsername != null) {
-      throw new ResponseStatusException(HttpStatus.CONFLICT, String.format(baseErrorMessage, "username", "is"));
-    } else if (userByName != null) {
-      throw new ResponseStatusException(HttpStatus.CONFLICT, String.format(baseErrorMessage, "name", "is"));
+    String conflict = getConflictMessage(takenFields.contains(UserRepository.TAKEN_USERNAME),
+        takenFields.contains(UserRepository.TAKEN_NAME));
+    if (conflict != null) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, conflict);
     }
   }
 
-  private void checkIfUserNameIsUnique(String username) {
-    User userByUsername = userRepository.findByUsername(username);
-
-    String baseErrorMessage = "The %s provided %s not unique. Please choose a diffrent username!";
-    if (userByUsername != null) {
-      throw new ResponseStatusException(HttpStatus.CONFLICT, String.format(baseErrorMessage, "username", "is"));
+  /**
+   * @return the message explaining which of the unique fields are already
+   *         taken, or null if none of them is
+   */
+  static String getConflictMessage(boolean usernameTaken, boolean nameTaken) {
+    String baseErrorMessage = "The %s provided %s already taken. Therefore, the user could not be created!";
+    if (usernameTaken && nameTaken) {
+      return String.format(baseErrorMessage, "username and the name", "are");
+    } else if (usernameTaken) {
+      return String.format(baseErrorMessage, "username", "is");
+    } else if (nameTaken) {
+      return String.format(baseErrorMessage, "name", "is");
     }
-
+    return null;
   }
 }
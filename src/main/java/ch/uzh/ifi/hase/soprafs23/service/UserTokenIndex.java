@@ -0,0 +1,86 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User Token Index
+ * In-memory index from the session token of a user to its id. It is filled
+ * from the USER table at startup (see UserIndexInitializer) and kept in sync
+ * by the UserService, so identifying the caller of a request never needs the
+ * database.
+ * With users.index.preload=false (persistent storage with millions of users)
+ * the index is not filled at startup. Tokens are then looked up in the
+ * database on their first use and kept afterwards. Unknown tokens are
+ * remembered for a few seconds in a bounded cache, so a client repeating an
+ * invalid token does not hit the database on every request.
+ */
+@Component
+public class UserTokenIndex {
+
+  static final long UNKNOWN_TOKENS_MAXIMUM_SIZE = 10_000;
+
+  static final long UNKNOWN_TOKENS_EXPIRE_AFTER_WRITE_SECONDS = 10;
+
+  private final Map<String, Long> userIdsByToken = new ConcurrentHashMap<>();
+
+  private final Cache<String, Boolean> unknownTokens = Caffeine.newBuilder()
+      .maximumSize(UNKNOWN_TOKENS_MAXIMUM_SIZE)
+      .expireAfterWrite(UNKNOWN_TOKENS_EXPIRE_AFTER_WRITE_SECONDS, TimeUnit.SECONDS)
+      .build();
+
+  private final UserRepository userRepository;
+
+  private final boolean preloaded;
+
+  public UserTokenIndex(@Qualifier("userRepository") UserRepository userRepository,
+      @Value("${users.index.preload:true}") boolean preloaded) {
+    this.userRepository = userRepository;
+    this.preloaded = preloaded;
+  }
+
+  /**
+   * @return the id of the user the token belongs to or null if it is unknown
+   */
+  public Long getUserId(String token) {
+    Long userId = userIdsByToken.get(token);
+    if (userId == null && !preloaded && unknownTokens.getIfPresent(token) == null) {
+      userId = userRepository.findIdByToken(token);
+      if (userId != null) {
+        userIdsByToken.put(token, userId);
+      } else {
+        unknownTokens.put(token, Boolean.TRUE);
+      }
+    }
+    return userId;
+  }
+
+  /**
+   * @return whether all tokens are loaded at startup
+   */
+  public boolean isPreloaded() {
+    return preloaded;
+  }
+
+  public void put(String token, long userId) {
+    userIdsByToken.put(token, userId);
+    unknownTokens.invalidate(token);
+  }
+
+  public void clear() {
+    userIdsByToken.clear();
+    unknownTokens.invalidateAll();
+  }
+
+  public int size() {
+    return userIdsByToken.size();
+  }
+}
@@ -0,0 +1,20 @@
+-- Schema of the User entity for the fast profile (spring.jpa.hibernate.ddl-auto=none).
+-- Matches what Hibernate generates for it; FastStartupConfigTest validates it against the entity.
+create sequence if not exists USER_SEQ start with 1 increment by 50;
+
+create table if not exists "user" (
+  id bigint not null,
+  birth_date date,
+  creation_date date not null,
+  name varchar(255) not null,
+  status integer not null,
+  token varchar(255) not null,
+  username varchar(255) not null,
+  version bigint,
+  primary key (id),
+  constraint UK_USER_USERNAME unique (username),
+  constraint UK_USER_TOKEN unique (token)
+);
+
+create index if not exists IDX_USER_NAME on "user" (name);
+create index if not exists IDX_USER_STATUS on "user" (status);
@@ -0,0 +1,194 @@
+package ch.uzh.ifi.hase.soprafs23;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Smoke test of the user API against a running server (the JVM build or the
+ * native executable, see the *SmokeTest tasks in build.gradle), following the
+ * scenarios of the UserControllerTest. The server is reached at the URL in the
+ * system property smoke.baseUrl.
+ */
+public class UserApiSmokeTest {
+
+  private static final String BASE_URL = System.getProperty("smoke.baseUrl", "http://localhost:8080");
+
+  private static final HttpClient CLIENT = HttpClient.newHttpClient();
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  @Test
+  public void root_running() throws Exception {
+    HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/")).GET());
+
+    assertEquals(200, response.statusCode());
+    assertEquals("The application is running.", response.body());
+  }
+
+  @Test
+  public void createUser_validPOST_userCreated() throws Exception {
+    Map<String, String> user = newUser();
+
+    HttpResponse<String> response = post("/users", user);
+
+    assertEquals(201, response.statusCode());
+    assertTrue(response.headers().firstValue("Authorization").orElse("").startsWith("Bearer "));
+    JsonNode created = OBJECT_MAPPER.readTree(response.body());
+    assertTrue(created.get("id").isNumber());
+    assertEquals(user.get("username"), created.get("username").asText());
+    assertEquals("ONLINE", created.get("status").asText());
+    assertFalse(created.has("token"));
+  }
+
+  @Test
+  public void createUser_takenUsername_conflict() throws Exception {
+    Map<String, String> user = newUser();
+    assertEquals(201, post("/users", user).statusCode());
+
+    Map<String, String> duplicate = newUser();
+    duplicate.put("username", user.get("username"));
+
+    assertEquals(409, post("/users", duplicate).statusCode());
+  }
+
+  @Test
+  public void getUsers_returnsCreatedUser() throws Exception {
+    JsonNode created = OBJECT_MAPPER.readTree(post("/users", newUser()).body());
+
+    HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/users")).GET());
+
+    assertEquals(200, response.statusCode());
+    boolean found = false;
+    for (JsonNode user : OBJECT_MAPPER.readTree(response.body())) {
+      found |= user.get("id").asLong() == created.get("id").asLong();
+    }
+    assertTrue(found);
+  }
+
+  @Test
+  public void getUser_validGET_userReturnedAndNotModified() throws Exception {
+    JsonNode created = OBJECT_MAPPER.readTree(post("/users", newUser()).body());
+    String path = "/users/" + created.get("id").asLong();
+
+    HttpResponse<String> response = send(HttpRequest.newBuilder(uri(path)).GET());
+    assertEquals(200, response.statusCode());
+    assertEquals(created.get("username").asText(), OBJECT_MAPPER.readTree(response.body()).get("username").asText());
+    String eTag = response.headers().firstValue("ETag").orElseThrow();
+
+    HttpResponse<String> notModified = send(HttpRequest.newBuilder(uri(path)).header("If-None-Match", eTag).GET());
+    assertEquals(304, notModified.statusCode());
+  }
+
+  @Test
+  public void getUser_unknownId_notFound() throws Exception {
+    assertEquals(404, send(HttpRequest.newBuilder(uri("/users/" + Long.MAX_VALUE)).GET()).statusCode());
+  }
+
+  @Test
+  public void updateUser_ifMatch_editsExpectedVersionOnce() throws Exception {
+    HttpResponse<String> createResponse = post("/users", newUser());
+    String authorization = createResponse.headers().firstValue("Authorization").orElseThrow();
+    String path = "/users/" + OBJECT_MAPPER.readTree(createResponse.body()).get("id").asLong();
+    String eTag = send(HttpRequest.newBuilder(uri(path)).GET()).headers().firstValue("ETag").orElseThrow();
+    String changes = OBJECT_MAPPER.writeValueAsString(Map.of("username", "edited-" + UUID.randomUUID(),
+        "birthDate", "1990-01-01"));
+
+    HttpRequest.Builder edit = HttpRequest.newBuilder(uri(path))
+        .header("Content-Type", "application/json")
+        .header("Authorization", authorization)
+        .header("If-Match", eTag)
+        .PUT(HttpRequest.BodyPublishers.ofString(changes));
+    assertEquals(204, send(edit).statusCode());
+    // the version the client has seen is gone
+    assertEquals(412, send(edit).statusCode());
+
+    JsonNode edited = OBJECT_MAPPER.readTree(send(HttpRequest.newBuilder(uri(path)).GET()).body());
+    assertEquals("1990-01-01", edited.get("birthDate").asText());
+  }
+
+  @Test
+  public void updateUser_tokenOfOtherUser_forbidden() throws Exception {
+    String authorization = post("/users", newUser()).headers().firstValue("Authorization").orElseThrow();
+    long otherUserId = OBJECT_MAPPER.readTree(post("/users", newUser()).body()).get("id").asLong();
+
+    HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/users/" + otherUserId))
+        .header("Content-Type", "application/json")
+        .header("Authorization", authorization)
+        .PUT(HttpRequest.BodyPublishers.ofString("{}")));
+
+    assertEquals(403, response.statusCode());
+  }
+
+  @Test
+  public void loginUser_validAndInvalidCredentials() throws Exception {
+    Map<String, String> user = newUser();
+    assertEquals(201, post("/users", user).statusCode());
+
+    HttpResponse<String> response = post("/login", user);
+    assertEquals(200, response.statusCode());
+    assertTrue(response.headers().firstValue("Authorization").isPresent());
+
+    Map<String, String> wrongName = newUser();
+    wrongName.put("username", user.get("username"));
+    assertEquals(401, post("/login", wrongName).statusCode());
+    assertEquals(404, post("/login", newUser()).statusCode());
+  }
+
+  @Test
+  public void logoutUser_validPUT_userLoggedOut() throws Exception {
+    long userId = OBJECT_MAPPER.readTree(post("/users", newUser()).body()).get("id").asLong();
+
+    HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/logout"))
+        .header("Content-Type", "application/json")
+        .PUT(HttpRequest.BodyPublishers.ofString(Long.toString(userId))));
+
+    assertEquals(204, response.statusCode());
+    JsonNode user = OBJECT_MAPPER.readTree(send(HttpRequest.newBuilder(uri("/users/" + userId)).GET()).body());
+    assertEquals("OFFLINE", user.get("status").asText());
+  }
+
+  @Test
+  public void searchAndAvailability_findCreatedUser() throws Exception {
+    Map<String, String> user = newUser();
+    assertEquals(201, post("/users", user).statusCode());
+
+    JsonNode matches = OBJECT_MAPPER.readTree(
+        send(HttpRequest.newBuilder(uri("/users/search?q=" + user.get("username"))).GET()).body());
+    assertEquals(user.get("username"), matches.get(0).get("username").asText());
+
+    JsonNode availability = OBJECT_MAPPER.readTree(
+        send(HttpRequest.newBuilder(uri("/users/availability?username=" + user.get("username"))).GET()).body());
+    assertFalse(availability.get("available").asBoolean());
+  }
+
+  private static Map<String, String> newUser() {
+    String suffix = UUID.randomUUID().toString();
+    return new HashMap<>(Map.of("username", "username-" + suffix, "name", "name-" + suffix));
+  }
+
+  private static HttpResponse<String> post(String path, Object body) throws IOException, InterruptedException {
+    return send(HttpRequest.newBuilder(uri(path))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(OBJECT_MAPPER.writeValueAsString(body))));
+  }
+
+  private static HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+    return CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofString());
+  }
+
+  private static URI uri(String path) {
+    return URI.create(BASE_URL + path);
+  }
+}
@@ -0,0 +1,49 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.service.UserIndexInitializer;
+import ch.uzh.ifi.hase.soprafs23.service.UserPresence;
+import ch.uzh.ifi.hase.soprafs23.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@WebAppConfiguration
+// a database of its own, the other test contexts share testdb; Hibernate checks
+// that the schema script matches the entities
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:fasttest", "spring.jpa.hibernate.ddl-auto=validate" })
+@ActiveProfiles("fast")
+public class FastStartupConfigTest {
+
+  @Autowired
+  private ConfigurableListableBeanFactory beanFactory;
+
+  @Autowired
+  private UserService userService;
+
+  @Test
+  public void lazyInitialization_userIndexesCreatedAtStartup() {
+    for (Class<?> eagerType : new Class<?>[] { UserIndexInitializer.class, UserPresence.class }) {
+      String[] beanNames = beanFactory.getBeanNamesForType(eagerType);
+      assertEquals(1, beanNames.length);
+      assertTrue(beanFactory.containsSingleton(beanNames[0]), eagerType.getSimpleName() + " was not created");
+    }
+  }
+
+  @Test
+  public void schemaScript_createUser_success() {
+    User testUser = new User();
+    testUser.setName("fastName");
+    testUser.setUsername("fastUsername");
+
+    User createdUser = userService.createUser(testUser);
+
+    assertNotNull(createdUser.getId());
+    assertEquals(createdUser.getId(), userService.getUser(createdUser.getId()).getId());
+  }
+}
@@ -0,0 +1,54 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FlushCountFilterTest {
+
+  private SimpleMeterRegistry meterRegistry;
+
+  private FlushCountFilter flushCountFilter;
+
+  private FlushCountingInterceptor flushCountingInterceptor;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    flushCountFilter = new FlushCountFilter(meterRegistry);
+    flushCountingInterceptor = new FlushCountingInterceptor();
+  }
+
+  @Test
+  public void doFilter_flushesDuringRequest_recorded() throws Exception {
+    flushCountFilter.doFilter(new MockHttpServletRequest("PUT", "/users/1"), new MockHttpServletResponse(),
+        (request, response) -> {
+          flushCountingInterceptor.postFlush(Collections.emptyIterator());
+          flushCountingInterceptor.postFlush(Collections.emptyIterator());
+        });
+
+    DistributionSummary flushes = meterRegistry.get("users.request.flushes").summary();
+    assertEquals(1, flushes.count());
+    assertEquals(2, flushes.totalAmount());
+  }
+
+  @Test
+  public void postFlush_outsideOfRequest_notCounted() throws Exception {
+    flushCountingInterceptor.postFlush(Collections.emptyIterator());
+
+    flushCountFilter.doFilter(new MockHttpServletRequest("GET", "/users"), new MockHttpServletResponse(),
+        (request, response) -> {
+        });
+
+    DistributionSummary flushes = meterRegistry.get("users.request.flushes").summary();
+    assertEquals(1, flushes.count());
+    assertEquals(0, flushes.totalAmount());
+  }
+}
@@ -0,0 +1,59 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@WebAppConfiguration
+// a database of its own, the other test contexts share testdb
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:pooltest")
+@ActiveProfiles("pool")
+public class PooledDataSourceConfigTest {
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Qualifier("writeDataSource")
+  @Autowired
+  private HikariDataSource writeDataSource;
+
+  @Qualifier("readDataSource")
+  @Autowired
+  private HikariDataSource readDataSource;
+
+  @Test
+  public void readOnlyTransaction_usesReadPool() {
+    TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+
+    readOnly.executeWithoutResult(status -> {
+      userRepository.count();
+      assertEquals(1, readDataSource.getHikariPoolMXBean().getActiveConnections());
+      assertEquals(0, writeDataSource.getHikariPoolMXBean().getActiveConnections());
+    });
+  }
+
+  @Test
+  public void readWriteTransaction_usesWritePool() {
+    TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+    readWrite.executeWithoutResult(status -> {
+      userRepository.count();
+      assertEquals(0, readDataSource.getHikariPoolMXBean().getActiveConnections());
+      assertEquals(1, writeDataSource.getHikariPoolMXBean().getActiveConnections());
+    });
+  }
+}
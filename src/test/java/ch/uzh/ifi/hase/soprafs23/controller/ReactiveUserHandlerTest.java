@@ -0,0 +1,139 @@
+package ch.uzh.ifi.hase.soprafs23.controller;
+
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
+import ch.uzh.ifi.hase.soprafs23.security.TokenAuthenticationFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test of the WebFlux routes of the reactive profile against the in-memory
+ * database (through R2DBC).
+ */
+// a database of its own, the other test contexts share testdb
+@SpringBootTest(properties = { "spring.main.web-application-type=reactive",
+    "spring.datasource.url=jdbc:h2:mem:reactivetest", "spring.r2dbc.url=r2dbc:h2:mem:///reactivetest" })
+@ActiveProfiles("reactive")
+@AutoConfigureWebTestClient
+public class ReactiveUserHandlerTest {
+
+  @Autowired
+  private WebTestClient webTestClient;
+
+  @Test
+  public void createUser_thenGetAndLogin_success() {
+    UserPostDTO userPostDTO = newUserPostDTO();
+    EntityExchangeResult<UserGetDTO> created = webTestClient.post().uri("/users")
+        .bodyValue(userPostDTO)
+        .exchange()
+        .expectStatus().isCreated()
+        .expectHeader().exists(HttpHeaders.AUTHORIZATION)
+        .expectBody(UserGetDTO.class)
+        .returnResult();
+    UserGetDTO user = created.getResponseBody();
+    assertNotNull(user);
+    assertEquals(userPostDTO.getUsername(), user.getUsername());
+
+    webTestClient.get().uri("/users/" + user.getId())
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + user.getId() + "-0-ONLINE\"")
+        .expectBody().jsonPath("$.username").isEqualTo(userPostDTO.getUsername());
+
+    webTestClient.get().uri("/users/" + user.getId())
+        .header(HttpHeaders.IF_NONE_MATCH, "\"" + user.getId() + "-0-ONLINE\"")
+        .exchange()
+        .expectStatus().isNotModified()
+        .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + user.getId() + "-0-ONLINE\"")
+        .expectBody().isEmpty();
+
+    webTestClient.post().uri("/login")
+        .bodyValue(userPostDTO)
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().exists(HttpHeaders.AUTHORIZATION);
+  }
+
+  @Test
+  public void createUser_duplicateUsername_conflict() {
+    UserPostDTO userPostDTO = newUserPostDTO();
+    webTestClient.post().uri("/users").bodyValue(userPostDTO).exchange().expectStatus().isCreated();
+
+    UserPostDTO duplicate = newUserPostDTO();
+    duplicate.setUsername(userPostDTO.getUsername());
+    webTestClient.post().uri("/users").bodyValue(duplicate).exchange().expectStatus().isEqualTo(409);
+  }
+
+  @Test
+  public void editUser_ownProfileWithIfMatch_updatedOnce() {
+    UserPostDTO userPostDTO = newUserPostDTO();
+    EntityExchangeResult<UserGetDTO> created = webTestClient.post().uri("/users")
+        .bodyValue(userPostDTO)
+        .exchange()
+        .expectBody(UserGetDTO.class)
+        .returnResult();
+    String authorization = created.getResponseHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+    assertNotNull(authorization);
+    assertTrue(authorization.startsWith(TokenAuthenticationFilter.BEARER_PREFIX));
+    long userId = created.getResponseBody().getId();
+    String eTag = "\"" + userId + "-0-ONLINE\"";
+
+    UserPostDTO userChanges = new UserPostDTO();
+    userChanges.setUsername("edited-" + UUID.randomUUID());
+    webTestClient.put().uri("/users/" + userId)
+        .header(HttpHeaders.AUTHORIZATION, authorization)
+        .header(HttpHeaders.IF_MATCH, eTag)
+        .bodyValue(userChanges)
+        .exchange()
+        .expectStatus().isNoContent();
+
+    // the same version cannot be edited twice
+    webTestClient.put().uri("/users/" + userId)
+        .header(HttpHeaders.AUTHORIZATION, authorization)
+        .header(HttpHeaders.IF_MATCH, eTag)
+        .bodyValue(userChanges)
+        .exchange()
+        .expectStatus().isEqualTo(412);
+
+    webTestClient.get().uri("/users/" + userId)
+        .exchange()
+        .expectBody().jsonPath("$.username").isEqualTo(userChanges.getUsername());
+  }
+
+  @Test
+  public void editUser_otherProfile_forbidden() {
+    EntityExchangeResult<UserGetDTO> first = webTestClient.post().uri("/users")
+        .bodyValue(newUserPostDTO()).exchange().expectBody(UserGetDTO.class).returnResult();
+    EntityExchangeResult<UserGetDTO> second = webTestClient.post().uri("/users")
+        .bodyValue(newUserPostDTO()).exchange().expectBody(UserGetDTO.class).returnResult();
+
+    webTestClient.put().uri("/users/" + second.getResponseBody().getId())
+        .header(HttpHeaders.AUTHORIZATION, first.getResponseHeaders().getFirst(HttpHeaders.AUTHORIZATION))
+        .bodyValue(new UserPostDTO())
+        .exchange()
+        .expectStatus().isForbidden();
+  }
+
+  @Test
+  public void getUser_unknownId_notFound() {
+    webTestClient.get().uri("/users/" + Long.MAX_VALUE).exchange().expectStatus().isNotFound();
+  }
+
+  private static UserPostDTO newUserPostDTO() {
+    String suffix = UUID.randomUUID().toString();
+    UserPostDTO userPostDTO = new UserPostDTO();
+    userPostDTO.setUsername("username-" + suffix);
+    userPostDTO.setName("name-" + suffix);
+    return userPostDTO;
+  }
+}
@@ -0,0 +1,153 @@
+package ch.uzh.ifi.hase.soprafs23.controller;
+
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
+import ch.uzh.ifi.hase.soprafs23.service.UserCache;
+import ch.uzh.ifi.hase.soprafs23.service.UserService;
+import ch.uzh.ifi.hase.soprafs23.service.UserTokenIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress test of concurrent edits of the same user through the controller,
+ * including its retry policy.
+ */
+@WebAppConfiguration
+@SpringBootTest
+public class UserControllerConcurrencyTest {
+
+  private static final int THREADS = 8;
+
+  private static final int EDITS_PER_THREAD = 25;
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private UserController userController;
+
+  @Autowired
+  private UserCache userCache;
+
+  @Autowired
+  private UserTokenIndex userTokenIndex;
+
+  private User user;
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+    userCache.clear();
+    userTokenIndex.clear();
+
+    User testUser = new User();
+    testUser.setName("testName");
+    testUser.setUsername("testUsername");
+    user = userService.createUser(testUser);
+  }
+
+  @Test
+  public void editUser_concurrentEdits_noLostUpdates() throws Exception {
+    long initialVersion = userRepository.findById(user.getId().longValue()).getVersion();
+    AtomicInteger applied = new AtomicInteger();
+    AtomicInteger conflicts = new AtomicInteger();
+
+    runConcurrently(thread -> {
+      for (int i = 0; i < EDITS_PER_THREAD; i++) {
+        UserPostDTO userChanges = new UserPostDTO();
+        userChanges.setBirthDate(LocalDate.of(1990, 1, 1).plusDays(thread * EDITS_PER_THREAD + i).toString());
+        try {
+          userController.editUser(user.getId(), userChanges, null, null);
+          applied.incrementAndGet();
+        }
+        catch (ResponseStatusException e) {
+          // only after the retries are exhausted
+          assertEquals(HttpStatus.CONFLICT, e.getStatus());
+          conflicts.incrementAndGet();
+        }
+      }
+    });
+
+    // every applied edit has created exactly one new version
+    assertEquals(THREADS * EDITS_PER_THREAD, applied.get() + conflicts.get());
+    assertTrue(applied.get() > 0);
+    assertEquals(initialVersion + applied.get(), userRepository.findById(user.getId().longValue()).getVersion());
+  }
+
+  @Test
+  public void editUser_concurrentEditsOfSameVersion_onlyOneApplied() throws Exception {
+    String eTag = "\"" + userService.getUserETag(user.getId()) + "\"";
+    AtomicInteger applied = new AtomicInteger();
+    AtomicInteger preconditionsFailed = new AtomicInteger();
+
+    runConcurrently(thread -> {
+      UserPostDTO userChanges = new UserPostDTO();
+      userChanges.setUsername("username" + thread);
+      try {
+        userController.editUser(user.getId(), userChanges, null, eTag);
+        applied.incrementAndGet();
+      }
+      catch (ResponseStatusException e) {
+        assertEquals(HttpStatus.PRECONDITION_FAILED, e.getStatus());
+        preconditionsFailed.incrementAndGet();
+      }
+    });
+
+    assertEquals(1, applied.get());
+    assertEquals(THREADS - 1, preconditionsFailed.get());
+  }
+
+  /**
+   * Starts the task on all threads at once and rethrows the first failure.
+   */
+  private void runConcurrently(ThreadTask task) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int thread = 0; thread < THREADS; thread++) {
+        int threadNumber = thread;
+        Callable<Void> callable = () -> {
+          start.await();
+          task.run(threadNumber);
+          return null;
+        };
+        futures.add(executor.submit(callable));
+      }
+      start.countDown();
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private interface ThreadTask {
+    void run(int thread) throws Exception;
+  }
+}
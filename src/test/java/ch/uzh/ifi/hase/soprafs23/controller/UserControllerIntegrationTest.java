@@ -0,0 +1,72 @@
+package ch.uzh.ifi.hase.soprafs23.controller;
+
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
+import ch.uzh.ifi.hase.soprafs23.service.UserCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Sends requests through the whole application (filters, open session in
+ * view, transactions and the in-memory database), which the
+ * UserControllerTest with its mocked UserService cannot cover.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class UserControllerIntegrationTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private UserCache userCache;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Test
+  public void editUser_userNotCached_edited() throws Exception {
+    String suffix = UUID.randomUUID().toString();
+    UserPostDTO userPostDTO = new UserPostDTO();
+    userPostDTO.setName("name-" + suffix);
+    userPostDTO.setUsername("username-" + suffix);
+    MvcResult created = mockMvc.perform(post("/users")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(userPostDTO)))
+        .andExpect(status().isCreated())
+        .andReturn();
+    long userId = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asLong();
+    String authorization = created.getResponse().getHeader(HttpHeaders.AUTHORIZATION);
+
+    // the edit has to load the user from the database
+    userCache.clear();
+
+    UserPostDTO userChanges = new UserPostDTO();
+    userChanges.setUsername("edited-" + suffix);
+    mockMvc.perform(put("/users/" + userId)
+            .header(HttpHeaders.AUTHORIZATION, authorization)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(userChanges)))
+        .andExpect(status().isNoContent());
+
+    userCache.clear();
+    mockMvc.perform(get("/users/" + userId))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.username", is("edited-" + suffix)));
+  }
+}
@@ -1,36 +1,63 @@
 package ch.uzh.ifi.hase.soprafs23.controller;
 
+import ch.uzh.ifi.hase.soprafs23.config.BinaryFormatConfig;
 import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
 import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.mapper.DTOMapper;
 
+import ch.uzh.ifi.hase.soprafs23.service.UserEventBroadcaster;
 import ch.uzh.ifi.hase.soprafs23.service.UserService;
+import ch.uzh.ifi.hase.soprafs23.service.UserTokenIndex;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -41,14 +68,30 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  * This tests if the UserController works.
  */
 @WebMvcTest(UserController.class)
+@Import(BinaryFormatConfig.class)
 public class UserControllerTest {
 
   @Autowired
   private MockMvc mockMvc;
 
+  @Autowired
+  private UserController userController;
+
   @MockBean
   private UserService userService;
 
+  @MockBean
+  private UserTokenIndex userTokenIndex;
+
+  @MockBean
+  private UserEventBroadcaster userEventBroadcaster;
+
+  @BeforeEach
+  public void setup() {
+    // the controller (and its cached bodies) is shared by all tests
+    ((UserResponseCache) ReflectionTestUtils.getField(userController, "userResponseCache")).clear();
+  }
+
   @Test
   public void givenUsers_whenGetUsers_thenReturnJsonArray() throws Exception {
     // given
@@ -57,23 +100,198 @@ public class UserControllerTest {
     user.setUsername("firstname@lastname");
     user.setStatus(UserStatus.OFFLINE);
 
-    List<User> allUsers = Collections.singletonList(user);
+    List<UserGetDTO> allUsers = Collections.singletonList(DTOMapper.INSTANCE.convertEntityToUserGetDTO(user));
 
     // this mocks the UserService -> we define above what the userService should
-    // return when getUsers() is called
-    given(userService.getUsers()).willReturn(allUsers);
+    // return when getUserGetDTOs() is called
+    given(userService.getUserGetDTOs()).willReturn(allUsers);
+    given(userService.getUsersETag()).willReturn("a-1");
 
     // when
     MockHttpServletRequestBuilder getRequest = get("/users").contentType(MediaType.APPLICATION_JSON);
 
     // then
     mockMvc.perform(getRequest).andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"a-1\""))
         .andExpect(jsonPath("$", hasSize(1)))
         .andExpect(jsonPath("$[0].name", is(user.getName())))
         .andExpect(jsonPath("$[0].username", is(user.getUsername())))
         .andExpect(jsonPath("$[0].status", is(user.getStatus().toString())));
   }
   
+  @Test
+  public void givenUsers_whenGetUsersAcceptingGzip_thenReturnCompressedBody() throws Exception {
+    // given
+    User user = new User();
+    user.setName("Firstname Lastname");
+    user.setUsername("firstname@lastname");
+    user.setStatus(UserStatus.OFFLINE);
+    given(userService.getUserGetDTOs()).willReturn(Collections.singletonList(DTOMapper.INSTANCE.convertEntityToUserGetDTO(user)));
+    given(userService.getUsersETag()).willReturn("b-1");
+
+    // when
+    MvcResult result = mockMvc.perform(get("/users").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br"))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+        .andExpect(header().string(HttpHeaders.ETAG, "\"b-1-gzip\""))
+        .andReturn();
+
+    // then
+    try (GZIPInputStream body = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+      String json = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+      assertTrue(json.contains("\"username\":\"firstname@lastname\""));
+    }
+  }
+
+  @Test
+  public void acceptsGzip_parsesAcceptEncoding() {
+    assertTrue(UserController.acceptsGzip("gzip"));
+    assertTrue(UserController.acceptsGzip("br;q=1.0, gzip;q=0.8"));
+    assertTrue(UserController.acceptsGzip("*"));
+    assertFalse(UserController.acceptsGzip("gzip;q=0"));
+    assertFalse(UserController.acceptsGzip("identity"));
+    assertFalse(UserController.acceptsGzip(null));
+  }
+
+  @Test
+  public void givenUsers_whenGetUsersAcceptingCbor_thenReturnCborArray() throws Exception {
+    // given
+    User user = new User();
+    user.setName("Firstname Lastname");
+    user.setUsername("firstname@lastname");
+    user.setStatus(UserStatus.OFFLINE);
+    user.setCreationDate(LocalDate.of(2023, 3, 1));
+    given(userService.getUserGetDTOs()).willReturn(Collections.singletonList(DTOMapper.INSTANCE.convertEntityToUserGetDTO(user)));
+    given(userService.getUsersETag()).willReturn("c-1");
+
+    // when
+    MvcResult result = mockMvc.perform(get("/users")
+            .accept(MediaType.APPLICATION_CBOR)
+            .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+        .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+        .andExpect(header().string(HttpHeaders.ETAG, "\"c-1-cbor\""))
+        .andReturn();
+
+    // then
+    JsonNode users = new ObjectMapper(new CBORFactory()).readTree(result.getResponse().getContentAsByteArray());
+    assertEquals(1, users.size());
+    assertEquals(user.getUsername(), users.get(0).get("username").asText());
+    assertEquals("OFFLINE", users.get(0).get("status").asText());
+    assertEquals("2023-03-01", users.get(0).get("creationDate").asText());
+  }
+
+  @Test
+  public void getBinaryMediaType_parsesAccept() {
+    assertEquals(MediaType.APPLICATION_CBOR, UserController.getBinaryMediaType("application/cbor"));
+    assertEquals(UserController.APPLICATION_SMILE,
+        UserController.getBinaryMediaType("application/json;q=0.5, application/x-jackson-smile"));
+    assertNull(UserController.getBinaryMediaType("application/cbor;q=0.5, application/json"));
+    assertNull(UserController.getBinaryMediaType("application/cbor;q=0, */*"));
+    assertNull(UserController.getBinaryMediaType("text/html, */*;q=0.8"));
+    assertNull(UserController.getBinaryMediaType("not a media type"));
+    assertNull(UserController.getBinaryMediaType(null));
+  }
+
+  @Test
+  public void givenUnchangedUsers_whenGetUsersWithETag_thenNotModified() throws Exception {
+    given(userService.getUsersETag()).willReturn("a-1");
+
+    mockMvc.perform(get("/users").header(HttpHeaders.IF_NONE_MATCH, "\"a-1\""))
+        .andExpect(status().isNotModified())
+        .andExpect(content().string(""));
+
+    // neither read nor serialized
+    Mockito.verify(userService, Mockito.never()).getUserGetDTOs();
+  }
+
+  @Test
+  public void givenUsers_whenGetUsersPage_thenReturnPageWithNextLink() throws Exception {
+    // given
+    User first = new User();
+    first.setId(3L);
+    first.setName("First User");
+    first.setUsername("first");
+    first.setStatus(UserStatus.ONLINE);
+
+    User second = new User();
+    second.setId(7L);
+    second.setName("Second User");
+    second.setUsername("second");
+    second.setStatus(UserStatus.OFFLINE);
+
+    given(userService.getUsersETag()).willReturn("a-1");
+    given(userService.getUserGetDTOs(2L, 2)).willReturn(Arrays.asList(
+        DTOMapper.INSTANCE.convertEntityToUserGetDTO(first), DTOMapper.INSTANCE.convertEntityToUserGetDTO(second)));
+
+    // when
+    MockHttpServletRequestBuilder getRequest = get("/users?limit=2&after=2");
+
+    // then
+    mockMvc.perform(getRequest).andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(2)))
+        .andExpect(jsonPath("$[0].username", is(first.getUsername())))
+        .andExpect(jsonPath("$[1].username", is(second.getUsername())))
+        .andExpect(header().string(HttpHeaders.LINK, "</users?limit=2&after=7>; rel=\"next\""));
+  }
+
+  @Test
+  public void givenUsers_whenStreamUsers_thenReturnOneJsonLinePerUser() throws Exception {
+    // given
+    User user = new User();
+    user.setId(1L);
+    user.setName("Firstname Lastname");
+    user.setUsername("firstname@lastname");
+    user.setStatus(UserStatus.OFFLINE);
+
+    UserGetDTO userGetDTO = DTOMapper.INSTANCE.convertEntityToUserGetDTO(user);
+    Mockito.doAnswer(invocation -> {
+      Consumer<UserGetDTO> consumer = invocation.getArgument(0);
+      consumer.accept(userGetDTO);
+      consumer.accept(userGetDTO);
+      return null;
+    }).when(userService).streamUserGetDTOs(Mockito.any());
+
+    // when
+    MvcResult result = mockMvc.perform(get("/users").accept(UserController.APPLICATION_NDJSON_VALUE))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    // then
+    String body = mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsString();
+    String[] lines = body.split("\n");
+    assertEquals(2, lines.length);
+    assertTrue(lines[0].contains("\"username\":\"firstname@lastname\""));
+  }
+
+  @Test
+  public void givenOnlineUsers_whenGetOnlineUsers_thenReturnJsonArray() throws Exception {
+    // given
+    UserGetDTO onlineUser = new UserGetDTO();
+    onlineUser.setId(1L);
+    onlineUser.setUsername("online");
+    onlineUser.setStatus(UserStatus.ONLINE);
+
+    given(userService.getOnlineUserGetDTOs()).willReturn(Collections.singletonList(onlineUser));
+
+    // then
+    mockMvc.perform(get("/users/online")).andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(1)))
+        .andExpect(jsonPath("$[0].username", is("online")))
+        .andExpect(jsonPath("$[0].status", is("ONLINE")));
+  }
+
+  @Test
+  public void heartbeat_validPUT_sessionKeptAlive() throws Exception {
+    mockMvc.perform(put("/users/1/heartbeat"))
+        .andExpect(status().isNoContent());
+
+    Mockito.verify(userService, Mockito.times(1)).heartbeat(1L);
+  }
+
   //valid post test
   @Test
   public void createUser_validPOST_userCreated() throws Exception {
@@ -99,6 +317,7 @@ public class UserControllerTest {
     // then
     mockMvc.perform(postRequest)
         .andExpect(status().isCreated())
+        .andExpect(header().string(HttpHeaders.AUTHORIZATION, "Bearer 1"))
         .andExpect(jsonPath("$.id", is(user.getId().intValue())))
         .andExpect(jsonPath("$.name", is(user.getName())))
         .andExpect(jsonPath("$.username", is(user.getUsername())))
@@ -106,6 +325,34 @@ public class UserControllerTest {
   }
 
 
+  @Test
+  public void createUser_cborPOST_userCreatedAsCbor() throws Exception {
+    User user = new User();
+    user.setId(1L);
+    user.setName("Test User");
+    user.setUsername("testUsername");
+    user.setToken("1");
+    user.setStatus(UserStatus.ONLINE);
+    given(userService.createUser(Mockito.any())).willReturn(user);
+
+    UserPostDTO userPostDTO = new UserPostDTO();
+    userPostDTO.setName("Test User");
+    userPostDTO.setUsername("testUsername");
+    ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+
+    MvcResult result = mockMvc.perform(post("/users")
+            .contentType(MediaType.APPLICATION_CBOR)
+            .accept(MediaType.APPLICATION_CBOR)
+            .content(cborMapper.writeValueAsBytes(userPostDTO)))
+        .andExpect(status().isCreated())
+        .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+        .andReturn();
+
+    JsonNode body = cborMapper.readTree(result.getResponse().getContentAsByteArray());
+    assertEquals(user.getUsername(), body.get("username").asText());
+    Mockito.verify(userService).createUser(Mockito.argThat(input -> "testUsername".equals(input.getUsername())));
+  }
+
   //self made test below
   //invalid post test
   @Test
@@ -137,6 +384,40 @@ public class UserControllerTest {
         .andExpect(status().reason("Your chosen credentials already exists"));
   }
 
+  @Test
+  public void createUsers_batchPOST_reportsEveryEntry() throws Exception {
+    // given
+    UserPostDTO first = new UserPostDTO();
+    first.setName("First User");
+    first.setUsername("first");
+
+    UserPostDTO second = new UserPostDTO();
+    second.setName("Second User");
+    second.setUsername("first");
+
+    given(userService.createUsers(Mockito.any())).willAnswer(invocation -> {
+      List<User> users = invocation.getArgument(0);
+      users.get(0).setId(1L);
+      users.get(0).setStatus(UserStatus.ONLINE);
+      return Collections.singletonMap(1, "The username provided is already taken.");
+    });
+
+    // when
+    MockHttpServletRequestBuilder postRequest = post("/users/batch")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(asJsonString(Arrays.asList(first, second)));
+
+    // then
+    mockMvc.perform(postRequest)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(2)))
+        .andExpect(jsonPath("$[0].index", is(0)))
+        .andExpect(jsonPath("$[0].user.id", is(1)))
+        .andExpect(jsonPath("$[0].user.username", is("first")))
+        .andExpect(jsonPath("$[1].index", is(1)))
+        .andExpect(jsonPath("$[1].error", is("The username provided is already taken.")));
+  }
+
   //valid get test
   @Test
   public void getUser_validGET_userReturned() throws Exception {
@@ -152,7 +433,8 @@ public class UserControllerTest {
     userPostDTO.setName("Test User");
     userPostDTO.setUsername("testUsername");
 
-    given(userService.getUser(user.getId())).willReturn(user);
+    given(userService.getUserGetDTO(user.getId())).willReturn(DTOMapper.INSTANCE.convertEntityToUserGetDTO(user));
+    given(userService.getUserETag(user.getId())).willReturn("1-0-ONLINE");
 
     //when/then -> do the request + validate the result
     MockHttpServletRequestBuilder getRequest = get("/users/1")
@@ -162,6 +444,7 @@ public class UserControllerTest {
     //then
     mockMvc.perform(getRequest)
         .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1-0-ONLINE\""))
         .andExpect(jsonPath("$.id", is(user.getId().intValue())))
         .andExpect(jsonPath("$.name", is(user.getName())))
         .andExpect(jsonPath("$.username", is(user.getUsername())))
@@ -169,6 +452,45 @@ public class UserControllerTest {
     
   }
 
+  @Test
+  public void getUser_unchangedWithETag_notModified() throws Exception {
+    given(userService.getUserETag(1L)).willReturn("1-0-ONLINE");
+
+    mockMvc.perform(get("/users/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-0-ONLINE\""))
+        .andExpect(status().isNotModified());
+
+    Mockito.verify(userService, Mockito.never()).getUserGetDTO(Mockito.anyLong());
+  }
+
+  @Test
+  public void getUser_acceptingSmile_userReturnedAsSmile() throws Exception {
+    User user = new User();
+    user.setId(1L);
+    user.setName("Test User");
+    user.setUsername("testUsername");
+    user.setStatus(UserStatus.ONLINE);
+    given(userService.getUserGetDTO(1L)).willReturn(DTOMapper.INSTANCE.convertEntityToUserGetDTO(user));
+    given(userService.getUserETag(1L)).willReturn("1-0-ONLINE");
+
+    MvcResult result = mockMvc.perform(get("/users/1").accept(UserController.APPLICATION_SMILE))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(UserController.APPLICATION_SMILE))
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1-0-ONLINE-smile\""))
+        .andReturn();
+
+    JsonNode body = new ObjectMapper(new SmileFactory()).readTree(result.getResponse().getContentAsByteArray());
+    assertEquals(1L, body.get("id").asLong());
+    assertEquals(user.getUsername(), body.get("username").asText());
+
+    // the JSON ETag does not match the Smile representation
+    mockMvc.perform(get("/users/1").accept(UserController.APPLICATION_SMILE)
+            .header(HttpHeaders.IF_NONE_MATCH, "\"1-0-ONLINE\""))
+        .andExpect(status().isOk());
+    mockMvc.perform(get("/users/1").accept(UserController.APPLICATION_SMILE)
+            .header(HttpHeaders.IF_NONE_MATCH, "\"1-0-ONLINE-smile\""))
+        .andExpect(status().isNotModified());
+  }
+
   //invalid get test
   @Test
   public void getUser_invalidGET_ErrosReturned() throws Exception {
@@ -177,7 +499,7 @@ public class UserControllerTest {
 
     ResponseStatusException notFound = new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
     
-    given(userService.getUser(fakeId)).willThrow(notFound);
+    given(userService.getUserETag(fakeId)).willThrow(notFound);
 
     //when/then -> do the request + validate the result
     MockHttpServletRequestBuilder getRequest = get("/users/" + fakeId);
@@ -217,6 +539,93 @@ public class UserControllerTest {
         
   }
 
+  @Test
+  public void updateUser_tokenOfOtherUser_forbidden() throws Exception {
+    // the token belongs to the user with id 2
+    given(userTokenIndex.getUserId("token")).willReturn(2L);
+
+    UserPostDTO userPostDTO = new UserPostDTO();
+    userPostDTO.setUsername("Test User edited");
+
+    MockHttpServletRequestBuilder putRequest = put("/users/1")
+        .header(HttpHeaders.AUTHORIZATION, "Bearer token")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(asJsonString(userPostDTO));
+
+    mockMvc.perform(putRequest)
+        .andExpect(status().isForbidden());
+    Mockito.verify(userService, Mockito.never()).editUser(Mockito.any(), Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  public void updateUser_ifMatch_editsExpectedVersion() throws Exception {
+    UserPostDTO userPostDTO = new UserPostDTO();
+    userPostDTO.setUsername("Test User edited");
+
+    MockHttpServletRequestBuilder putRequest = put("/users/1")
+        .header(HttpHeaders.IF_MATCH, "\"1-3-ONLINE\"")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(asJsonString(userPostDTO));
+
+    mockMvc.perform(putRequest)
+        .andExpect(status().isNoContent());
+    Mockito.verify(userService).editUser(Mockito.any(), Mockito.any(), Mockito.eq(3L));
+  }
+
+  @Test
+  public void updateUser_ifMatchOfOtherUser_preconditionFailed() throws Exception {
+    MockHttpServletRequestBuilder putRequest = put("/users/1")
+        .header(HttpHeaders.IF_MATCH, "\"2-3-ONLINE\"")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(asJsonString(new UserPostDTO()));
+
+    mockMvc.perform(putRequest)
+        .andExpect(status().isPreconditionFailed());
+    Mockito.verify(userService, Mockito.never()).editUser(Mockito.any(), Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  public void updateUser_concurrentEdit_retried() throws Exception {
+    // the first attempt loses against another edit
+    Mockito.doThrow(new ObjectOptimisticLockingFailureException(User.class, 1L))
+        .doNothing()
+        .when(userService).editUser(Mockito.any(), Mockito.any(), Mockito.isNull());
+
+    MockHttpServletRequestBuilder putRequest = put("/users/1")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(asJsonString(new UserPostDTO()));
+
+    mockMvc.perform(putRequest)
+        .andExpect(status().isNoContent());
+    Mockito.verify(userService, Mockito.times(2)).editUser(Mockito.any(), Mockito.any(), Mockito.isNull());
+  }
+
+  @Test
+  public void updateUser_concurrentEditsExhaustRetries_conflict() throws Exception {
+    Mockito.doThrow(new ObjectOptimisticLockingFailureException(User.class, 1L))
+        .when(userService).editUser(Mockito.any(), Mockito.any(), Mockito.isNull());
+
+    MockHttpServletRequestBuilder putRequest = put("/users/1")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(asJsonString(new UserPostDTO()));
+
+    mockMvc.perform(putRequest)
+        .andExpect(status().isConflict());
+    Mockito.verify(userService, Mockito.times(UserController.MAX_EDIT_ATTEMPTS))
+        .editUser(Mockito.any(), Mockito.any(), Mockito.isNull());
+  }
+
+  @Test
+  public void getUsers_unknownToken_unauthorized() throws Exception {
+    given(userTokenIndex.getUserId("unknown")).willReturn(null);
+
+    MockHttpServletRequestBuilder getRequest = get("/users")
+        .header(HttpHeaders.AUTHORIZATION, "Bearer unknown");
+
+    mockMvc.perform(getRequest)
+        .andExpect(status().isUnauthorized());
+  }
+
   //invalid put test
   @Test
   public void updateUser_invalidPUT_ErrosReturned() throws Exception {
@@ -331,6 +740,27 @@ public class UserControllerTest {
         .andExpect(status().reason("Your Name is incorrect"));
   }
 
+  @Test
+  public void searchUsers_returnsMatches() throws Exception {
+    UserGetDTO match = new UserGetDTO(1L, "Firstname Lastname", "firstname@lastname", UserStatus.ONLINE, null, null);
+    given(userService.searchUserGetDTOs("first", 10)).willReturn(Collections.singletonList(match));
+
+    mockMvc.perform(get("/users/search").param("q", "first"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(1)))
+        .andExpect(jsonPath("$[0].username", is("firstname@lastname")));
+  }
+
+  @Test
+  public void getUsernameAvailability_returnsAvailability() throws Exception {
+    given(userService.isUsernameAvailable("newUsername")).willReturn(true);
+
+    mockMvc.perform(get("/users/availability").param("username", "newUsername"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.username", is("newUsername")))
+        .andExpect(jsonPath("$.available", is(true)));
+  }
+
   //valid logout test
   @Test
   public void logoutUser_validPUT_userLoggedOut() throws Exception {
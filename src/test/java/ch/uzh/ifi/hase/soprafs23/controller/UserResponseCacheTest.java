@@ -0,0 +1,78 @@
+package ch.uzh.ifi.hase.soprafs23.controller;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserResponseCacheTest {
+
+  private UserResponseCache userResponseCache;
+
+  private AtomicInteger loads;
+
+  private UserGetDTO user;
+
+  @BeforeEach
+  public void setup() {
+    userResponseCache = new UserResponseCache(100);
+    loads = new AtomicInteger();
+    user = new UserGetDTO(1L, "testName", "testUsername", UserStatus.ONLINE, null, null);
+  }
+
+  @Test
+  public void getUsers_sameETag_servedFromCache() {
+    UserResponseCache.Body first = userResponseCache.getUsers("a-1", () -> {
+      loads.incrementAndGet();
+      return Collections.singletonList(user);
+    });
+    UserResponseCache.Body second = userResponseCache.getUsers("a-1", () -> {
+      loads.incrementAndGet();
+      return Collections.singletonList(user);
+    });
+
+    assertEquals(1, loads.get());
+    assertSame(first, second);
+    assertNotNull(first.getGzip());
+  }
+
+  @Test
+  public void getUsers_changedETag_serializedAgain() {
+    userResponseCache.getUsers("a-1", () -> {
+      loads.incrementAndGet();
+      return Collections.emptyList();
+    });
+    UserResponseCache.Body body = userResponseCache.getUsers("a-2", () -> {
+      loads.incrementAndGet();
+      return Collections.singletonList(user);
+    });
+
+    assertEquals(2, loads.get());
+    assertEquals("a-2", body.getETag());
+    assertTrue(new String(body.getJson()).contains("testUsername"));
+  }
+
+  @Test
+  public void getUser_changedETag_serializedAgain() {
+    userResponseCache.getUser(1L, "1-0-ONLINE", () -> {
+      loads.incrementAndGet();
+      return user;
+    });
+    userResponseCache.getUser(1L, "1-0-ONLINE", () -> {
+      loads.incrementAndGet();
+      return user;
+    });
+    UserResponseCache.Body body = userResponseCache.getUser(1L, "1-0-OFFLINE", () -> {
+      loads.incrementAndGet();
+      return user;
+    });
+
+    assertEquals(2, loads.get());
+    assertNull(body.getGzip());
+  }
+}
@@ -2,15 +2,20 @@ package ch.uzh.ifi.hase.soprafs23.repository;
 
 import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.LocalDate;
+import java.util.List;
 
 @DataJpaTest
 public class UserRepositoryIntegrationTest {
@@ -44,4 +49,59 @@ public class UserRepositoryIntegrationTest {
     assertEquals(found.getToken(), user.getToken());
     assertEquals(found.getStatus(), user.getStatus());
   }
+
+  @Test
+  public void findUserGetDTOById_success() {
+    // given
+    User user = persistUser("username", "1");
+
+    // when
+    UserGetDTO found = userRepository.findUserGetDTOById(user.getId());
+
+    // then
+    assertEquals(user.getId(), found.getId());
+    assertEquals(user.getName(), found.getName());
+    assertEquals(user.getUsername(), found.getUsername());
+    assertEquals(user.getStatus(), found.getStatus());
+    assertEquals(user.getCreationDate(), found.getCreationDate());
+  }
+
+  @Test
+  public void findUserGetDTOsAfter_returnsNextPageOrderedById() {
+    // given
+    User first = persistUser("first", "1");
+    User second = persistUser("second", "2");
+    User third = persistUser("third", "3");
+
+    // when
+    List<UserGetDTO> page = userRepository.findUserGetDTOsAfter(first.getId(), PageRequest.of(0, 1));
+
+    // then
+    assertEquals(1, page.size());
+    assertEquals(second.getId(), page.get(0).getId());
+    assertTrue(userRepository.findUserGetDTOsAfter(third.getId(), PageRequest.of(0, 1)).isEmpty());
+  }
+
+  @Test
+  public void findIdByToken_success() {
+    // given
+    User user = persistUser("username", "1");
+
+    // when / then
+    assertEquals(user.getId(), userRepository.findIdByToken("1"));
+    assertNull(userRepository.findIdByToken("unknown"));
+  }
+
+  private User persistUser(String username, String token) {
+    User user = new User();
+    user.setName(username + " name");
+    user.setUsername(username);
+    user.setStatus(UserStatus.OFFLINE);
+    user.setCreationDate(LocalDate.now());
+    user.setToken(token);
+
+    entityManager.persist(user);
+    entityManager.flush();
+    return user;
+  }
 }
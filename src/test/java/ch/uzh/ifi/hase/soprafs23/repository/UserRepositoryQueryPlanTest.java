@@ -0,0 +1,156 @@
+package ch.uzh.ifi.hase.soprafs23.repository;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import org.hibernate.Session;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks with H2's EXPLAIN that the lookups of the UserRepository are served
+ * by an index instead of a table scan. The explained statements are the ones
+ * Hibernate actually sends for the repository methods, captured with a
+ * StatementInspector.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+    + "ch.uzh.ifi.hase.soprafs23.repository.UserRepositoryQueryPlanTest$CapturingStatementInspector")
+public class UserRepositoryQueryPlanTest {
+
+  @Autowired
+  private TestEntityManager entityManager;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @BeforeEach
+  public void setup() {
+    for (int i = 0; i < 20; i++) {
+      User user = new User();
+      user.setName("name" + i);
+      user.setUsername("username" + i);
+      user.setStatus(i % 2 == 0 ? UserStatus.ONLINE : UserStatus.OFFLINE);
+      user.setCreationDate(LocalDate.now());
+      user.setToken("token" + i);
+      entityManager.persist(user);
+    }
+    entityManager.flush();
+    entityManager.clear();
+  }
+
+  @Test
+  public void findById_usesPrimaryKey() {
+    assertUsesIndex("PRIMARY_KEY", explain(() -> userRepository.findById(1L)));
+  }
+
+  @Test
+  public void findByUsername_usesUniqueConstraint() {
+    assertUsesIndex("UK_USER_USERNAME", explain(() -> userRepository.findByUsername("username1")));
+  }
+
+  @Test
+  public void existsByUsername_usesUniqueConstraint() {
+    assertUsesIndex("UK_USER_USERNAME", explain(() -> userRepository.existsByUsername("username1")));
+  }
+
+  @Test
+  public void findByName_usesNameIndex() {
+    assertUsesIndex("IDX_USER_NAME", explain(() -> userRepository.findByName("name1")));
+  }
+
+  @Test
+  public void findIdByToken_usesUniqueConstraint() {
+    assertUsesIndex("UK_USER_TOKEN", explain(() -> userRepository.findIdByToken("token1")));
+  }
+
+  @Test
+  public void findTakenFields_usesIndexInBothBranches() {
+    String plan = explain(() -> assertEquals(2, userRepository.findTakenFields("username1", "name1").size()));
+
+    assertUsesIndex("UK_USER_USERNAME", plan);
+    assertUsesIndex("IDX_USER_NAME", plan);
+  }
+
+  @Test
+  public void findTakenUsernames_usesUniqueConstraint() {
+    assertUsesIndex("UK_USER_USERNAME",
+        explain(() -> userRepository.findTakenUsernames(List.of("username1", "username2"))));
+  }
+
+  @Test
+  public void findTakenNames_usesNameIndex() {
+    assertUsesIndex("IDX_USER_NAME", explain(() -> userRepository.findTakenNames(List.of("name1", "name2"))));
+  }
+
+  @Test
+  public void streamIdsByStatus_usesStatusIndex() {
+    assertUsesIndex("IDX_USER_STATUS", explain(() -> {
+      try (Stream<Long> ids = userRepository.streamIdsByStatus(UserStatus.ONLINE)) {
+        ids.count();
+      }
+    }));
+  }
+
+  /**
+   * Runs the repository call and explains the one select it sent. The
+   * parameters are left unbound (null), H2 plans the statement when it is
+   * prepared, before their values are known.
+   */
+  private String explain(Runnable repositoryCall) {
+    CapturingStatementInspector.STATEMENTS.clear();
+    repositoryCall.run();
+    List<String> selects = CapturingStatementInspector.STATEMENTS.stream()
+        .filter(sql -> sql.trim().toLowerCase().startsWith("select"))
+        .collect(Collectors.toList());
+    assertEquals(1, selects.size(), selects.toString());
+
+    return entityManager.getEntityManager().unwrap(Session.class).doReturningWork(connection -> {
+      try (PreparedStatement statement = connection.prepareStatement("explain " + selects.get(0))) {
+        for (int i = 1; i <= statement.getParameterMetaData().getParameterCount(); i++) {
+          statement.setNull(i, Types.NULL);
+        }
+        try (ResultSet resultSet = statement.executeQuery()) {
+          assertTrue(resultSet.next());
+          return resultSet.getString(1);
+        }
+      }
+    });
+  }
+
+  private static void assertUsesIndex(String index, String plan) {
+    assertTrue(plan.contains(index), plan);
+    assertFalse(plan.contains("tableScan"), plan);
+  }
+
+  /**
+   * Records every statement Hibernate prepares, without changing it.
+   */
+  public static class CapturingStatementInspector implements StatementInspector {
+
+    private static final long serialVersionUID = 1L;
+
+    static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+      STATEMENTS.add(sql);
+      return sql;
+    }
+  }
+}
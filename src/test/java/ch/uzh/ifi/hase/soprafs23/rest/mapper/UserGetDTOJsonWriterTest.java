@@ -0,0 +1,130 @@
+package ch.uzh.ifi.hase.soprafs23.rest.mapper;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UserGetDTOJsonWriterTest
+ * Tests that the UserGetDTOJsonWriter writes exactly what the ObjectMapper
+ * configured by Spring Boot writes.
+ */
+public class UserGetDTOJsonWriterTest {
+
+  // as configured by Spring Boot: dates as ISO strings
+  private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+      .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+      .build();
+
+  @Test
+  public void toJson_user_sameAsObjectMapper() throws Exception {
+    UserGetDTO user = new UserGetDTO(42L, "Firstname Lastname", "username", UserStatus.ONLINE,
+        LocalDate.of(2023, 3, 1), LocalDate.of(1999, 12, 31));
+
+    assertArrayEquals(objectMapper.writeValueAsBytes(user), UserGetDTOJsonWriter.toJson(user));
+  }
+
+  @Test
+  public void toJson_nullFields_sameAsObjectMapper() throws Exception {
+    UserGetDTO user = new UserGetDTO();
+
+    assertArrayEquals(objectMapper.writeValueAsBytes(user), UserGetDTOJsonWriter.toJson(user));
+  }
+
+  @Test
+  public void toJson_specialCharacters_sameAsObjectMapper() throws Exception {
+    UserGetDTO user = new UserGetDTO(-7L, "quote \" backslash \\ slash / tab \t newline \n nul \u0000 del \u007f",
+        "äöü € 日本 😀  ", UserStatus.OFFLINE, LocalDate.of(1, 1, 1), LocalDate.of(10000, 1, 1));
+
+    assertEquals(objectMapper.writeValueAsString(user), new String(UserGetDTOJsonWriter.toJson(user), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void toJson_unpairedSurrogate_replaced() {
+    UserGetDTO user = new UserGetDTO(1L, "high \uD800 low \uDC00", "username", UserStatus.ONLINE, null, null);
+
+    String json = new String(UserGetDTOJsonWriter.toJson(user), StandardCharsets.UTF_8);
+
+    assertTrue(json.contains("\"name\":\"high ? low ?\""), json);
+  }
+
+  @Test
+  public void toJson_extremeIds_sameAsObjectMapper() throws Exception {
+    for (long id : new long[] { 0, 9, 10, -1, Long.MAX_VALUE, Long.MIN_VALUE }) {
+      UserGetDTO user = new UserGetDTO(id, "name", "username", UserStatus.ONLINE, null, null);
+
+      assertArrayEquals(objectMapper.writeValueAsBytes(user), UserGetDTOJsonWriter.toJson(user));
+    }
+  }
+
+  @Test
+  public void toJson_userList_sameAsObjectMapper() throws Exception {
+    List<UserGetDTO> users = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      users.add(new UserGetDTO((long) i, "name" + i, "username" + i, UserStatus.values()[i % 2],
+          LocalDate.of(2023, 1, 1).plusDays(i), i % 3 == 0 ? null : LocalDate.of(1990, 1, 1).plusDays(i)));
+    }
+
+    assertArrayEquals(objectMapper.writeValueAsBytes(users), UserGetDTOJsonWriter.toJson(users));
+    assertArrayEquals(objectMapper.writeValueAsBytes(Collections.emptyList()),
+        UserGetDTOJsonWriter.toJson(Collections.emptyList()));
+  }
+
+  @Test
+  public void write_largerThanPooledBuffer_sameAsObjectMapper() throws Exception {
+    char[] longName = new char[UserGetDTOJsonWriter.MAX_POOLED_BUFFER_SIZE];
+    Arrays.fill(longName, 'a');
+    UserGetDTO user = new UserGetDTO(1L, new String(longName), "username", UserStatus.ONLINE, null, null);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    UserGetDTOJsonWriter.write(user, out);
+
+    assertArrayEquals(objectMapper.writeValueAsBytes(user), out.toByteArray());
+    // the next write gets a buffer of its own
+    UserGetDTO small = new UserGetDTO(2L, "name", "username", UserStatus.ONLINE, null, null);
+    assertArrayEquals(objectMapper.writeValueAsBytes(small), UserGetDTOJsonWriter.toJson(small));
+  }
+
+  @Test
+  public void messageConverter_writesUsersOnly() throws Exception {
+    UserGetDTOHttpMessageConverter converter = new UserGetDTOHttpMessageConverter();
+    List<UserGetDTO> users = Collections.singletonList(
+        new UserGetDTO(1L, "name", "username", UserStatus.ONLINE, LocalDate.of(2023, 3, 1), null));
+
+    assertTrue(converter.canWrite(new ParameterizedTypeReference<List<UserGetDTO>>() {
+    }.getType(), ArrayList.class, MediaType.APPLICATION_JSON));
+    assertTrue(converter.canWrite(UserGetDTO.class, UserGetDTO.class, MediaType.APPLICATION_JSON));
+    assertFalse(converter.canWrite(new ParameterizedTypeReference<Map<String, Object>>() {
+    }.getType(), Map.class, MediaType.APPLICATION_JSON));
+    assertFalse(converter.canWrite(UserGetDTO.class, UserGetDTO.class, MediaType.TEXT_PLAIN));
+    assertFalse(converter.canRead(UserGetDTO.class, MediaType.APPLICATION_JSON));
+    assertThrows(HttpMessageNotReadableException.class,
+        () -> converter.read(UserGetDTO.class, null, new MockHttpInputMessage(new byte[0])));
+
+    MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+    converter.write(users, new ParameterizedTypeReference<List<UserGetDTO>>() {
+    }.getType(), MediaType.APPLICATION_JSON, outputMessage);
+
+    assertArrayEquals(objectMapper.writeValueAsBytes(users), outputMessage.getBodyAsBytes());
+    assertEquals(MediaType.APPLICATION_JSON, outputMessage.getHeaders().getContentType());
+  }
+}
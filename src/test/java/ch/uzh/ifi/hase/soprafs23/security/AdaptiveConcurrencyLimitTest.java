@@ -0,0 +1,104 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveConcurrencyLimitTest {
+
+  private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(100);
+
+  @Test
+  public void tryAcquire_limitReached_rejected() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 2, TARGET);
+
+    assertTrue(limit.tryAcquire());
+    assertTrue(limit.tryAcquire());
+    assertFalse(limit.tryAcquire());
+    assertEquals(2, limit.getInFlight());
+
+    limit.release(0, 0);
+    assertTrue(limit.tryAcquire());
+  }
+
+  @Test
+  public void release_slowRequests_limitDecreasesToMinimum() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(5, 100, TARGET);
+    long now = 0;
+
+    assertTrue(limit.tryAcquire());
+    limit.release(now, now + 2 * TARGET);
+    now += 2 * TARGET + 1;
+    assertEquals((int) (100 * AdaptiveConcurrencyLimit.BACKOFF_RATIO), limit.getLimit());
+
+    // one after the other: every request started after the previous decrease
+    for (int i = 0; i < 100; i++) {
+      limit.tryAcquire();
+      limit.release(now, now + 2 * TARGET);
+      now += 2 * TARGET + 1;
+    }
+    assertEquals(5, limit.getLimit());
+    assertEquals(0, limit.getInFlight());
+  }
+
+  @Test
+  public void release_slowRequestsInOneWindow_limitDecreasesOnce() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(5, 100, TARGET);
+
+    // ten requests in flight together are one congestion signal
+    for (int i = 0; i < 10; i++) {
+      assertTrue(limit.tryAcquire());
+    }
+    for (int i = 0; i < 10; i++) {
+      limit.release(0, 2 * TARGET + i);
+    }
+    assertEquals(90, limit.getLimit());
+
+    // a request started after the decrease backs off again
+    assertTrue(limit.tryAcquire());
+    limit.release(2 * TARGET + 1, 4 * TARGET + 2);
+    assertEquals(81, limit.getLimit());
+  }
+
+  @Test
+  public void release_fastRequestsUnderLoad_limitRecovers() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 10, TARGET);
+    long now = 0;
+    for (int i = 0; i < 20; i++) {
+      limit.tryAcquire();
+      limit.release(now, now + 2 * TARGET);
+      now += 2 * TARGET + 1;
+    }
+    assertEquals(2, limit.getLimit());
+
+    // all slots in use and fast -> the limit grows by one per window
+    for (int round = 0; round < 50; round++) {
+      int requests = limit.getLimit();
+      for (int i = 0; i < requests; i++) {
+        assertTrue(limit.tryAcquire());
+      }
+      for (int i = 0; i < requests; i++) {
+        limit.release(now, now);
+      }
+      now++;
+    }
+    assertEquals(10, limit.getLimit());
+  }
+
+  @Test
+  public void release_fastRequestsWithoutLoad_limitStays() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(5, 100, TARGET);
+    assertTrue(limit.tryAcquire());
+    limit.release(0, 2 * TARGET);
+    assertEquals(90, limit.getLimit());
+
+    // one request at a time uses far less than half of the limit
+    for (int i = 0; i < 1000; i++) {
+      limit.tryAcquire();
+      limit.release(i, i);
+    }
+    assertEquals(90, limit.getLimit());
+  }
+}
@@ -0,0 +1,117 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimitFilterTest {
+
+  @Test
+  public void doFilter_loginBurstExceeded_tooManyRequests() throws Exception {
+    RateLimitFilter filter = new RateLimitFilter(true, 0.1, 2, 100, 100, 1000, 1000, 1, 100, 1000);
+
+    assertEquals(HttpStatus.OK.value(), perform(filter, "POST", "/login", "10.0.0.1").getStatus());
+    assertEquals(HttpStatus.OK.value(), perform(filter, "POST", "/login", "10.0.0.1").getStatus());
+    MockHttpServletResponse rejected = perform(filter, "POST", "/login", "10.0.0.1");
+    assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), rejected.getStatus());
+    assertNotNull(rejected.getHeader(HttpHeaders.RETRY_AFTER));
+
+    // other clients and the other endpoints have buckets of their own
+    assertEquals(HttpStatus.OK.value(), perform(filter, "POST", "/login", "10.0.0.2").getStatus());
+    assertEquals(HttpStatus.OK.value(), perform(filter, "GET", "/users", "10.0.0.1").getStatus());
+  }
+
+  @Test
+  public void doFilter_globalBurstExceeded_tooManyRequests() throws Exception {
+    RateLimitFilter filter = new RateLimitFilter(true, 100, 100, 100, 100, 0.1, 2, 1, 100, 1000);
+
+    assertEquals(HttpStatus.OK.value(), perform(filter, "GET", "/users/1", "10.0.0.1").getStatus());
+    assertEquals(HttpStatus.OK.value(), perform(filter, "GET", "/users/1", "10.0.0.2").getStatus());
+    assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), perform(filter, "GET", "/users/1", "10.0.0.3").getStatus());
+  }
+
+  @Test
+  public void doFilter_otherPathsOrDisabled_notLimited() throws Exception {
+    RateLimitFilter filter = new RateLimitFilter(true, 0.1, 1, 0.1, 1, 0.1, 1, 1, 1, 1000);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(HttpStatus.OK.value(), perform(filter, "GET", "/", "10.0.0.1").getStatus());
+    }
+
+    RateLimitFilter disabled = new RateLimitFilter(false, 0.1, 1, 0.1, 1, 0.1, 1, 1, 1, 1000);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(HttpStatus.OK.value(), perform(disabled, "POST", "/login", "10.0.0.1").getStatus());
+    }
+  }
+
+  @Test
+  public void doFilter_concurrencyLimitReached_serviceUnavailable() throws Exception {
+    RateLimitFilter filter = new RateLimitFilter(true, 100, 100, 100, 100, 1000, 1000, 1, 1, 1000);
+    CountDownLatch inFlight = new CountDownLatch(1);
+    CountDownLatch finish = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      // one request holds the only slot
+      Future<?> slow = executor.submit(() -> {
+        MockHttpServletRequest request = request("GET", "/users", "10.0.0.1");
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+          inFlight.countDown();
+          try {
+            finish.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+        return null;
+      });
+      inFlight.await();
+
+      MockHttpServletResponse rejected = perform(filter, "GET", "/users", "10.0.0.2");
+      assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), rejected.getStatus());
+
+      finish.countDown();
+      slow.get();
+      assertEquals(HttpStatus.OK.value(), perform(filter, "GET", "/users", "10.0.0.2").getStatus());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void bindTo_rejectionsCounted() throws Exception {
+    RateLimitFilter filter = new RateLimitFilter(true, 0.1, 1, 100, 100, 1000, 1000, 1, 100, 1000);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    filter.bindTo(meterRegistry);
+
+    perform(filter, "POST", "/login", "10.0.0.1");
+    perform(filter, "POST", "/login", "10.0.0.1");
+
+    assertEquals(1, meterRegistry.get("users.ratelimit.rejected").tag("limit", "client").functionCounter().count());
+    assertEquals(0, meterRegistry.get("users.ratelimit.rejected").tag("limit", "global").functionCounter().count());
+    assertEquals(1, meterRegistry.get("users.ratelimit.clients").gauge().value());
+    assertEquals(0, meterRegistry.get("users.ratelimit.concurrency.inflight").gauge().value());
+  }
+
+  private static MockHttpServletResponse perform(RateLimitFilter filter, String method, String path, String remoteAddr)
+      throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    filter.doFilter(request(method, path, remoteAddr), response, new MockFilterChain());
+    return response;
+  }
+
+  private static MockHttpServletRequest request(String method, String path, String remoteAddr) {
+    MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+    request.setRemoteAddr(remoteAddr);
+    return request;
+  }
+}
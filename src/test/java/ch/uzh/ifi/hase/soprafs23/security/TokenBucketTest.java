@@ -0,0 +1,65 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  public void tryAcquire_burstThenRate() {
+    TokenBucket bucket = new TokenBucket(10, 5);
+    long now = 1_000 * SECOND;
+
+    // a full bucket allows the burst at once
+    for (int i = 0; i < 5; i++) {
+      assertTrue(bucket.tryAcquire(now));
+    }
+    assertFalse(bucket.tryAcquire(now));
+    assertEquals(SECOND / 10, bucket.nanosUntilAvailable(now));
+
+    // one token every 100ms
+    assertTrue(bucket.tryAcquire(now + SECOND / 10));
+    assertFalse(bucket.tryAcquire(now + SECOND / 10));
+  }
+
+  @Test
+  public void availableTokens_refillUpToCapacity() {
+    TokenBucket bucket = new TokenBucket(10, 5);
+    long now = 1_000 * SECOND;
+    assertEquals(5, bucket.availableTokens(now));
+
+    bucket.tryAcquire(now);
+    bucket.tryAcquire(now);
+    assertEquals(3, bucket.availableTokens(now));
+    assertEquals(0, bucket.nanosUntilAvailable(now));
+    assertEquals(5, bucket.availableTokens(now + 10 * SECOND));
+  }
+
+  @Test
+  public void tryAcquire_concurrently_neverMoreThanCapacity() {
+    TokenBucket bucket = new TokenBucket(1, 1000);
+    long now = 1_000 * SECOND;
+    AtomicInteger acquired = new AtomicInteger();
+
+    IntStream.range(0, 10_000).parallel().forEach(i -> {
+      if (bucket.tryAcquire(now)) {
+        acquired.incrementAndGet();
+      }
+    });
+
+    assertEquals(1000, acquired.get());
+  }
+
+  @Test
+  public void constructor_invalidRate_throwsException() {
+    assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+    assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+  }
+}
@@ -0,0 +1,59 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+
+  @Test
+  public void mightContain_insertedValues_noFalseNegatives() {
+    BloomFilter bloomFilter = new BloomFilter(10_000, 0.01);
+    for (int i = 0; i < 10_000; i++) {
+      bloomFilter.put("username" + i);
+    }
+
+    for (int i = 0; i < 10_000; i++) {
+      assertTrue(bloomFilter.mightContain("username" + i));
+    }
+  }
+
+  @Test
+  public void mightContain_otherValues_fewFalsePositives() {
+    BloomFilter bloomFilter = new BloomFilter(10_000, 0.01);
+    for (int i = 0; i < 10_000; i++) {
+      bloomFilter.put("username" + i);
+    }
+
+    int falsePositives = 0;
+    for (int i = 0; i < 10_000; i++) {
+      if (bloomFilter.mightContain("other" + i)) {
+        falsePositives++;
+      }
+    }
+    // 1% expected, generous bound to keep the test stable
+    assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+  }
+
+  @Test
+  public void clear_removesAllValues() {
+    BloomFilter bloomFilter = new BloomFilter(100, 0.01);
+    bloomFilter.put("username");
+
+    bloomFilter.clear();
+
+    assertFalse(bloomFilter.mightContain("username"));
+  }
+
+  @Test
+  public void availabilityFilter_notReady_everythingMightBeTaken() {
+    UserAvailabilityFilter filter = new UserAvailabilityFilter(100, 0.01);
+
+    assertTrue(filter.mightContainUsername("username"));
+
+    filter.markReady();
+    assertFalse(filter.mightContainUsername("username"));
+    filter.putUsername("username");
+    assertTrue(filter.mightContainUsername("username"));
+  }
+}
@@ -0,0 +1,73 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionTimeoutWheelTest {
+
+  private static final long TICK = 1000;
+
+  @Test
+  public void advance_beforeDeadline_nothingExpires() {
+    SessionTimeoutWheel wheel = new SessionTimeoutWheel(8, TICK, 0);
+    wheel.schedule(1L, 0, 5 * TICK);
+
+    assertTrue(wheel.advance(4 * TICK).isEmpty());
+    assertTrue(wheel.isScheduled(1L));
+  }
+
+  @Test
+  public void advance_pastDeadline_expiresOnce() {
+    SessionTimeoutWheel wheel = new SessionTimeoutWheel(8, TICK, 0);
+    wheel.schedule(1L, 0, 5 * TICK);
+
+    assertEquals(Collections.singletonList(1L), wheel.advance(5 * TICK));
+    assertFalse(wheel.isScheduled(1L));
+    assertTrue(wheel.advance(20 * TICK).isEmpty());
+  }
+
+  @Test
+  public void schedule_again_movesDeadline() {
+    SessionTimeoutWheel wheel = new SessionTimeoutWheel(8, TICK, 0);
+    wheel.schedule(1L, 0, 5 * TICK);
+    wheel.schedule(1L, 3 * TICK, 5 * TICK);
+
+    assertTrue(wheel.advance(6 * TICK).isEmpty());
+    assertEquals(Collections.singletonList(1L), wheel.advance(8 * TICK));
+  }
+
+  @Test
+  public void cancel_neverExpires() {
+    SessionTimeoutWheel wheel = new SessionTimeoutWheel(8, TICK, 0);
+    wheel.schedule(1L, 0, 5 * TICK);
+    wheel.cancel(1L);
+
+    assertTrue(wheel.advance(10 * TICK).isEmpty());
+  }
+
+  @Test
+  public void advance_deadlineInLaterTurn_keptUntilDue() {
+    // the timeout is longer than one turn of the wheel
+    SessionTimeoutWheel wheel = new SessionTimeoutWheel(4, TICK, 0);
+    wheel.schedule(1L, 0, 6 * TICK);
+
+    assertTrue(wheel.advance(5 * TICK).isEmpty());
+    assertEquals(Collections.singletonList(1L), wheel.advance(6 * TICK));
+  }
+
+  @Test
+  public void advance_longPause_expiresEverything() {
+    SessionTimeoutWheel wheel = new SessionTimeoutWheel(4, TICK, 0);
+    wheel.schedule(1L, 0, 2 * TICK);
+    wheel.schedule(2L, 0, 3 * TICK);
+
+    List<Long> expired = wheel.advance(100 * TICK);
+
+    assertEquals(2, expired.size());
+    assertTrue(wheel.getScheduledUserIds().isEmpty());
+  }
+}
@@ -0,0 +1,96 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserCacheTest {
+
+  private UserCache userCache;
+
+  private User testUser;
+
+  @BeforeEach
+  public void setup() {
+    userCache = new UserCache(100, 60);
+
+    testUser = new User();
+    testUser.setId(1L);
+    testUser.setName("testName");
+    testUser.setUsername("testUsername");
+    testUser.setToken("1");
+    testUser.setStatus(UserStatus.ONLINE);
+  }
+
+  @Test
+  public void put_thenGetByIdAndUsername_returnsCopies() {
+    userCache.put(testUser);
+
+    User byId = userCache.getById(1L);
+    User byUsername = userCache.getByUsername("testUsername");
+
+    assertEquals(testUser.getName(), byId.getName());
+    assertEquals(testUser.getId(), byUsername.getId());
+    assertNotSame(testUser, byId);
+
+    // modifying a returned user must not change the cached one
+    byId.setStatus(UserStatus.OFFLINE);
+    assertEquals(UserStatus.ONLINE, userCache.getById(1L).getStatus());
+  }
+
+  @Test
+  public void evict_removesBothKeys() {
+    userCache.put(testUser);
+
+    userCache.evict(testUser);
+
+    assertNull(userCache.getById(1L));
+    assertNull(userCache.getByUsername("testUsername"));
+  }
+
+  @Test
+  public void getByUsername_usernameChanged_returnsNull() {
+    userCache.put(testUser);
+
+    // the user is re-cached under a new username without evicting the old one
+    testUser.setUsername("newUsername");
+    userCache.put(testUser);
+
+    assertNull(userCache.getByUsername("testUsername"));
+    assertEquals(1L, userCache.getByUsername("newUsername").getId());
+  }
+
+  @Test
+  public void put_olderVersion_keepsNewerVersion() {
+    testUser.setVersion(2L);
+    userCache.put(testUser);
+
+    // a read that loaded the row before the edit puts it after the edit
+    User stale = userCache.getById(1L);
+    stale.setVersion(1L);
+    stale.setUsername("oldUsername");
+    userCache.put(stale);
+
+    assertEquals(2L, userCache.getById(1L).getVersion());
+    assertEquals("testUsername", userCache.getById(1L).getUsername());
+    assertNull(userCache.getByUsername("oldUsername"));
+
+    testUser.setVersion(3L);
+    userCache.put(testUser);
+    assertEquals(3L, userCache.getById(1L).getVersion());
+  }
+
+  @Test
+  public void stats_countHitsAndMisses() {
+    userCache.put(testUser);
+
+    userCache.getById(1L);
+    userCache.getById(2L);
+
+    assertEquals(1, userCache.getByIdStats().hitCount());
+    assertEquals(1, userCache.getByIdStats().missCount());
+  }
+}
@@ -0,0 +1,27 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserEventType;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserEventGetDTO;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserChangeCounterTest {
+
+  @Test
+  public void getVersion_changesWithEveryEvent() {
+    UserChangeCounter userChangeCounter = new UserChangeCounter();
+    String initial = userChangeCounter.getVersion();
+    assertEquals(initial, userChangeCounter.getVersion());
+
+    userChangeCounter.onUserEvent(new UserEventGetDTO(UserEventType.ONLINE, 1L, null));
+
+    assertNotEquals(initial, userChangeCounter.getVersion());
+  }
+
+  @Test
+  public void getVersion_differsBetweenInstances() {
+    // a restarted server must not confirm copies from before the restart
+    assertNotEquals(new UserChangeCounter().getVersion(), new UserChangeCounter().getVersion());
+  }
+}
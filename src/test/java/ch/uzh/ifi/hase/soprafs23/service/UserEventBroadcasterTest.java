@@ -0,0 +1,99 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserEventType;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserEventGetDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserEventBroadcasterTest {
+
+  private UserEventBroadcaster broadcaster;
+
+  // lets the sends of a stalled client return at the end of the test
+  private final CountDownLatch stalledClient = new CountDownLatch(1);
+
+  @BeforeEach
+  public void setup() {
+    broadcaster = new UserEventBroadcaster(2, 60_000, 1_000);
+  }
+
+  @AfterEach
+  public void teardown() {
+    stalledClient.countDown();
+    broadcaster.shutdown();
+  }
+
+  @Test
+  public void subscribe_registersSubscriber() {
+    broadcaster.subscribe();
+    broadcaster.subscribe();
+
+    assertEquals(2, broadcaster.getSubscriberCount());
+  }
+
+  @Test
+  public void publish_withoutSubscribers_doesNothing() {
+    broadcaster.publish(new UserEventGetDTO(UserEventType.ONLINE, 1L, null));
+
+    assertEquals(0, broadcaster.getDroppedEventCount());
+  }
+
+  @Test
+  public void publish_completedSubscriber_removed() {
+    broadcaster.subscribe().complete();
+    broadcaster.subscribe();
+
+    // the first send to the completed emitter fails and unsubscribes it
+    broadcaster.publish(new UserEventGetDTO(UserEventType.ONLINE, 1L, null));
+
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+      while (broadcaster.getSubscriberCount() != 1) {
+        Thread.sleep(10);
+      }
+    });
+  }
+
+  @Test
+  public void publish_blockedSubscriber_othersReceiveEventsAndBlockedOneRemoved() throws Exception {
+    CountDownLatch blockedSend = new CountDownLatch(1);
+    broadcaster.subscribe(new SseEmitter() {
+      @Override
+      public void send(SseEventBuilder builder) {
+        blockedSend.countDown();
+        try {
+          stalledClient.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    BlockingQueue<SseEmitter.SseEventBuilder> received = new LinkedBlockingQueue<>();
+    broadcaster.subscribe(new SseEmitter() {
+      @Override
+      public void send(SseEventBuilder builder) {
+        received.add(builder);
+      }
+    });
+
+    broadcaster.publish(new UserEventGetDTO(UserEventType.ONLINE, 1L, null));
+    assertTrue(blockedSend.await(5, TimeUnit.SECONDS));
+    broadcaster.publish(new UserEventGetDTO(UserEventType.ONLINE, 2L, null));
+
+    assertNotNull(received.poll(5, TimeUnit.SECONDS));
+    assertNotNull(received.poll(5, TimeUnit.SECONDS));
+
+    // the send of the first subscriber is still blocked after the timeout
+    broadcaster.expireStalledSends(System.nanoTime() + TimeUnit.SECONDS.toNanos(2));
+    assertEquals(1, broadcaster.getSubscriberCount());
+  }
+}
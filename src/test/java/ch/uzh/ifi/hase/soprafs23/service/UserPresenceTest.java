@@ -0,0 +1,144 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserEventType;
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserEventGetDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserPresenceTest {
+
+  @Mock
+  private UserRepository userRepository;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  @Mock
+  private ApplicationEventPublisher eventPublisher;
+
+  private UserPresence userPresence;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    userPresence = new UserPresence(userRepository, transactionManager, eventPublisher, 10);
+  }
+
+  @Test
+  public void getStatus_noChange_returnsPersistedStatus() {
+    assertEquals(UserStatus.OFFLINE, userPresence.getStatus(1L, UserStatus.OFFLINE));
+  }
+
+  @Test
+  public void heartbeat_visibleBeforeFlush() {
+    userPresence.heartbeat(1L);
+
+    assertEquals(UserStatus.ONLINE, userPresence.getStatus(1L, UserStatus.OFFLINE));
+    assertTrue(userPresence.getOnlineUserIds().contains(1L));
+    Mockito.verifyNoInteractions(userRepository);
+  }
+
+  @Test
+  public void flush_lastChangeWins_oneUpdatePerStatus() {
+    userPresence.heartbeat(1L);
+    userPresence.logout(1L);
+    userPresence.logout(2L);
+
+    userPresence.flush();
+
+    Mockito.verify(userRepository, Mockito.times(1)).updateStatus(Mockito.argThat(
+        (Collection<Long> ids) -> ids.size() == 2 && ids.containsAll(List.of(1L, 2L))), Mockito.eq(UserStatus.OFFLINE));
+    Mockito.verify(userRepository, Mockito.never()).updateStatus(Mockito.any(), Mockito.eq(UserStatus.ONLINE));
+
+    // nothing is pending anymore
+    userPresence.flush();
+    Mockito.verifyNoMoreInteractions(userRepository);
+  }
+
+  @Test
+  public void flush_failure_changesStayPending() {
+    userPresence.heartbeat(1L);
+    Mockito.when(userRepository.updateStatus(Mockito.any(), Mockito.any())).thenThrow(new IllegalStateException());
+
+    userPresence.flush();
+    Mockito.reset(userRepository);
+    userPresence.drain();
+
+    Mockito.verify(userRepository, Mockito.times(1)).updateStatus(Collections.singletonList(1L), UserStatus.ONLINE);
+  }
+
+  @Test
+  public void expireSessions_missedHeartbeats_offline() {
+    long now = System.currentTimeMillis();
+    userPresence.heartbeat(1L, now);
+    userPresence.heartbeat(2L, now);
+
+    // user 2 keeps sending heartbeats
+    userPresence.heartbeat(2L, now + 8_000);
+    userPresence.expireSessions(now + 12_000);
+
+    assertEquals(UserStatus.OFFLINE, userPresence.getStatus(1L, UserStatus.ONLINE));
+    assertEquals(UserStatus.ONLINE, userPresence.getStatus(2L, UserStatus.OFFLINE));
+    assertEquals(Collections.singleton(2L), userPresence.getOnlineUserIds());
+  }
+
+  @Test
+  public void expireSessions_heartbeatAfterTimeoutDetected_staysOnline() {
+    long now = System.currentTimeMillis();
+    userPresence.heartbeat(1L, now);
+    userPresence.heartbeat(2L, now);
+    // the first user set OFFLINE lets the other one send a heartbeat, after
+    // its session has been taken off the wheel but before it is set OFFLINE
+    long[] lateUserId = new long[1];
+    Mockito.doAnswer(invocation -> {
+      UserEventGetDTO event = invocation.getArgument(0);
+      if (event.getType() == UserEventType.OFFLINE && lateUserId[0] == 0) {
+        lateUserId[0] = event.getUserId() == 1L ? 2L : 1L;
+        userPresence.heartbeat(lateUserId[0], now + 12_000);
+      }
+      return null;
+    }).when(eventPublisher).publishEvent(Mockito.any(Object.class));
+
+    userPresence.expireSessions(now + 12_000);
+
+    assertNotEquals(0, lateUserId[0]);
+    assertTrue(userPresence.isTracked(lateUserId[0]));
+    assertEquals(UserStatus.ONLINE, userPresence.getStatus(lateUserId[0], UserStatus.OFFLINE));
+    assertEquals(Collections.singleton(lateUserId[0]), userPresence.getOnlineUserIds());
+  }
+
+  @Test
+  public void logout_sessionNotTrackedAnymore() {
+    userPresence.heartbeat(1L);
+
+    userPresence.logout(1L);
+
+    assertFalse(userPresence.isTracked(1L));
+    assertEquals(UserStatus.OFFLINE, userPresence.getStatus(1L, UserStatus.ONLINE));
+  }
+
+  @Test
+  public void statusChange_publishesEventOnlyOnChange() {
+    userPresence.heartbeat(1L);
+    userPresence.heartbeat(1L);
+    userPresence.logout(1L);
+
+    Mockito.verify(eventPublisher, Mockito.times(1)).publishEvent(Mockito.argThat(
+        (Object event) -> ((UserEventGetDTO) event).getType() == UserEventType.ONLINE));
+    Mockito.verify(eventPublisher, Mockito.times(1)).publishEvent(Mockito.argThat(
+        (Object event) -> ((UserEventGetDTO) event).getType() == UserEventType.OFFLINE));
+  }
+}
@@ -0,0 +1,45 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserSearchIndexTest {
+
+  private UserSearchIndex userSearchIndex;
+
+  @BeforeEach
+  public void setup() {
+    userSearchIndex = new UserSearchIndex();
+    userSearchIndex.add(1L, "bobby", "Bobby Tables");
+    userSearchIndex.add(2L, "bob", "Robert Smith");
+    userSearchIndex.add(3L, "alice", "Alice Bobson");
+  }
+
+  @Test
+  public void search_prefixOfUsernameOrNameWord_exactMatchFirst() {
+    assertEquals(List.of(2L, 1L, 3L), userSearchIndex.search("Bob", 10));
+  }
+
+  @Test
+  public void search_respectsLimit() {
+    assertEquals(List.of(2L), userSearchIndex.search("bob", 1));
+  }
+
+  @Test
+  public void search_blankQuery_noMatches() {
+    assertTrue(userSearchIndex.search(" ", 10).isEmpty());
+  }
+
+  @Test
+  public void remove_thenAddChangedUsername_findsOnlyNewUsername() {
+    userSearchIndex.remove(2L, "bob", "Robert Smith");
+    userSearchIndex.add(2L, "rob", "Robert Smith");
+
+    assertEquals(List.of(1L, 3L), userSearchIndex.search("bob", 10));
+    assertEquals(List.of(2L), userSearchIndex.search("rob", 10));
+  }
+}
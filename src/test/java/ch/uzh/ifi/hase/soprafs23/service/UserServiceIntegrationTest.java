@@ -3,14 +3,21 @@ package ch.uzh.ifi.hase.soprafs23.service;
 import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs23.entity.User;
 import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -29,9 +36,17 @@ public class UserServiceIntegrationTest {
   @Autowired
   private UserService userService;
 
+  @Autowired
+  private UserCache userCache;
+
+  @Autowired
+  private UserTokenIndex userTokenIndex;
+
   @BeforeEach
   public void setup() {
     userRepository.deleteAll();
+    userCache.clear();
+    userTokenIndex.clear();
   }
 
   @Test
@@ -52,6 +67,7 @@ public class UserServiceIntegrationTest {
     assertEquals(testUser.getUsername(), createdUser.getUsername());
     assertNotNull(createdUser.getToken());
     assertEquals(UserStatus.ONLINE, createdUser.getStatus());
+    assertEquals(createdUser.getId(), userTokenIndex.getUserId(createdUser.getToken()));
   }
 
   @Test
@@ -72,5 +88,120 @@ public class UserServiceIntegrationTest {
 
     // check that an error is thrown
     assertThrows(ResponseStatusException.class, () -> userService.createUser(testUser2));
-  } 
+  }
+
+  @Test
+  public void editUser_changesUserAndCollectionETag() {
+    // given
+    User testUser = new User();
+    testUser.setName("testName");
+    testUser.setUsername("testUsername");
+    User createdUser = userService.createUser(testUser);
+    String userETag = userService.getUserETag(createdUser.getId());
+    String usersETag = userService.getUsersETag();
+
+    // when
+    UserPostDTO userChanges = new UserPostDTO();
+    userChanges.setUsername("otherUsername");
+    userService.editUser(userService.getUser(createdUser.getId()), userChanges, null);
+
+    // then
+    assertNotEquals(userETag, userService.getUserETag(createdUser.getId()));
+    assertNotEquals(usersETag, userService.getUsersETag());
+  }
+
+  @Test
+  public void editUser_takenUsername_conflictByConstraint() {
+    User first = new User();
+    first.setName("firstName");
+    first.setUsername("firstUsername");
+    userService.createUser(first);
+    User second = new User();
+    second.setName("secondName");
+    second.setUsername("secondUsername");
+    User createdSecond = userService.createUser(second);
+
+    UserPostDTO userChanges = new UserPostDTO();
+    userChanges.setUsername("firstUsername");
+
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> userService.editUser(userService.getUser(createdSecond.getId()), userChanges, null));
+    assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+    assertEquals("secondUsername", userRepository.findById(createdSecond.getId().longValue()).getUsername());
+  }
+
+  @Test
+  public void editUser_sameUsername_noConflict() {
+    User testUser = new User();
+    testUser.setName("testName");
+    testUser.setUsername("testUsername");
+    User createdUser = userService.createUser(testUser);
+
+    UserPostDTO userChanges = new UserPostDTO();
+    userChanges.setUsername("testUsername");
+    userChanges.setBirthDate("1999-03-03");
+    userService.editUser(userService.getUser(createdUser.getId()), userChanges, null);
+
+    assertEquals(LocalDate.of(1999, 3, 3), userRepository.findById(createdUser.getId().longValue()).getBirthDate());
+  }
+
+  @Test
+  public void editUser_staleExpectedVersion_preconditionFailed() {
+    User testUser = new User();
+    testUser.setName("testName");
+    testUser.setUsername("testUsername");
+    User createdUser = userService.createUser(testUser);
+    long version = userService.getUser(createdUser.getId()).getVersion();
+
+    UserPostDTO userChanges = new UserPostDTO();
+    userChanges.setUsername("otherUsername");
+    userService.editUser(userService.getUser(createdUser.getId()), userChanges, version);
+
+    // a second client still edits the version it has read before
+    UserPostDTO lostUpdate = new UserPostDTO();
+    lostUpdate.setUsername("lostUsername");
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> userService.editUser(userService.getUser(createdUser.getId()), lostUpdate, version));
+    assertEquals(HttpStatus.PRECONDITION_FAILED, exception.getStatus());
+    assertEquals("otherUsername", userRepository.findById(createdUser.getId().longValue()).getUsername());
+  }
+
+  @Test
+  public void createUsers_batchWithConflicts_createsOnlyUniqueUsers() {
+    // given -> one user exists already
+    User existing = new User();
+    existing.setName("existingName");
+    existing.setUsername("existingUsername");
+    userService.createUser(existing);
+
+    List<User> batch = new ArrayList<>();
+    for (int i = 0; i < 120; i++) {
+      User user = new User();
+      user.setName("name" + i);
+      user.setUsername("username" + i);
+      batch.add(user);
+    }
+    // collides with the existing user
+    User takenUsername = new User();
+    takenUsername.setName("otherName");
+    takenUsername.setUsername("existingUsername");
+    batch.add(takenUsername);
+    // collides with the first entry of the batch
+    User takenName = new User();
+    takenName.setName("name0");
+    takenName.setUsername("otherUsername");
+    batch.add(takenName);
+
+    // when
+    Map<Integer, String> conflicts = userService.createUsers(batch);
+
+    // then
+    assertEquals(2, conflicts.size());
+    assertTrue(conflicts.containsKey(120));
+    assertTrue(conflicts.containsKey(121));
+    assertEquals(121, userRepository.count());
+    assertNotNull(batch.get(0).getId());
+    assertNotNull(userRepository.findByUsername("username119"));
+    assertNull(userRepository.findByUsername("otherUsername"));
+  }
 }
@@ -3,14 +3,23 @@ package ch.uzh.ifi.hase.soprafs23.service;
 import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs23.entity.User;
 import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserEventGetDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class UserServiceTest {
@@ -18,6 +27,27 @@ public class UserServiceTest {
   @Mock
   private UserRepository userRepository;
 
+  @Mock
+  private UserCache userCache;
+
+  @Mock
+  private UserTokenIndex userTokenIndex;
+
+  @Mock
+  private UserPresence userPresence;
+
+  @Mock
+  private ApplicationEventPublisher eventPublisher;
+
+  @Mock
+  private UserAvailabilityFilter userAvailabilityFilter;
+
+  @Mock
+  private UserSearchIndex userSearchIndex;
+
+  @Mock
+  private UserChangeCounter userChangeCounter;
+
   @InjectMocks
   private UserService userService;
 
@@ -36,6 +66,9 @@ public class UserServiceTest {
     // when -> any object is being save in the userRepository -> return the dummy
     // testUser
     Mockito.when(userRepository.save(Mockito.any())).thenReturn(testUser);
+    // by default every value might be taken -> the database decides
+    Mockito.when(userAvailabilityFilter.mightContainUsername(Mockito.any())).thenReturn(true);
+    Mockito.when(userAvailabilityFilter.mightContainName(Mockito.any())).thenReturn(true);
   }
 
   @Test
@@ -52,6 +85,8 @@ public class UserServiceTest {
     assertEquals(testUser.getUsername(), createdUser.getUsername());
     assertNotNull(createdUser.getToken());
     assertEquals(UserStatus.ONLINE, createdUser.getStatus());
+    Mockito.verify(userTokenIndex, Mockito.times(1)).put(createdUser.getToken(), createdUser.getId());
+    Mockito.verify(eventPublisher, Mockito.times(1)).publishEvent(Mockito.any(UserEventGetDTO.class));
   }
 
   @Test
@@ -60,12 +95,15 @@ public class UserServiceTest {
     userService.createUser(testUser);
 
     // when -> setup additional mocks for UserRepository
-    Mockito.when(userRepository.findByName(Mockito.any())).thenReturn(testUser);
-    Mockito.when(userRepository.findByUsername(Mockito.any())).thenReturn(null);
+    Mockito.when(userRepository.findTakenFields(Mockito.any(), Mockito.any()))
+        .thenReturn(List.of(UserRepository.TAKEN_NAME));
 
     // then -> attempt to create second user with same user -> check that an error
     // is thrown
-    assertThrows(ResponseStatusException.class, () -> userService.createUser(testUser));
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> userService.createUser(testUser));
+    assertEquals("The name provided is already taken. Therefore, the user could not be created!",
+        exception.getReason());
   }
 
   @Test
@@ -74,12 +112,222 @@ public class UserServiceTest {
     userService.createUser(testUser);
 
     // when -> setup additional mocks for UserRepository
-    Mockito.when(userRepository.findByName(Mockito.any())).thenReturn(testUser);
-    Mockito.when(userRepository.findByUsername(Mockito.any())).thenReturn(testUser);
+    Mockito.when(userRepository.findTakenFields(Mockito.any(), Mockito.any()))
+        .thenReturn(List.of(UserRepository.TAKEN_USERNAME, UserRepository.TAKEN_NAME));
 
     // then -> attempt to create second user with same user -> check that an error
     // is thrown
-    assertThrows(ResponseStatusException.class, () -> userService.createUser(testUser));
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> userService.createUser(testUser));
+    assertEquals("The username and the name provided are already taken. Therefore, the user could not be created!",
+        exception.getReason());
+  }
+
+  @Test
+  public void createUser_definitelyAvailable_noUniquenessQuery() {
+    // given -> neither the username nor the name is in the availability filter
+    Mockito.when(userAvailabilityFilter.mightContainUsername(Mockito.any())).thenReturn(false);
+    Mockito.when(userAvailabilityFilter.mightContainName(Mockito.any())).thenReturn(false);
+
+    // when
+    userService.createUser(testUser);
+
+    // then
+    Mockito.verify(userRepository, Mockito.never()).findTakenFields(Mockito.any(), Mockito.any());
+    Mockito.verify(userAvailabilityFilter, Mockito.times(1)).putUsername("testUsername");
+    Mockito.verify(userAvailabilityFilter, Mockito.times(1)).putName("testName");
   }
 
+  @Test
+  public void isUsernameAvailable_definitelyAvailable_noDatabaseLookup() {
+    Mockito.when(userAvailabilityFilter.mightContainUsername("newUsername")).thenReturn(false);
+
+    assertTrue(userService.isUsernameAvailable("newUsername"));
+    Mockito.verify(userRepository, Mockito.never()).existsByUsername(Mockito.any());
+  }
+
+  @Test
+  public void isUsernameAvailable_mightBeTaken_checkedInDatabase() {
+    Mockito.when(userRepository.existsByUsername("testUsername")).thenReturn(true);
+
+    assertFalse(userService.isUsernameAvailable("testUsername"));
+  }
+
+  @Test
+  public void searchUserGetDTOs_keepsRankingOfIndex() {
+    // given -> the index ranks user 2 before user 1
+    Mockito.when(userSearchIndex.search("test", 10)).thenReturn(List.of(2L, 1L));
+    Mockito.when(userRepository.findUserGetDTOsByIdIn(List.of(2L, 1L))).thenReturn(List.of(
+        new UserGetDTO(1L, "testName", "testUsername", UserStatus.OFFLINE, null, null),
+        new UserGetDTO(2L, "testName2", "test", UserStatus.OFFLINE, null, null)));
+    Mockito.when(userPresence.getStatus(Mockito.anyLong(), Mockito.any())).thenReturn(UserStatus.OFFLINE);
+
+    // when
+    List<UserGetDTO> found = userService.searchUserGetDTOs("test", 10);
+
+    // then
+    assertEquals(2, found.size());
+    assertEquals(2L, found.get(0).getId());
+    assertEquals(1L, found.get(1).getId());
+  }
+
+  @Test
+  public void searchUserGetDTOs_limitTooLarge_throwsException() {
+    assertThrows(ResponseStatusException.class,
+        () -> userService.searchUserGetDTOs("test", UserSearchIndex.MAX_LIMIT + 1));
+  }
+
+  @Test
+  public void getUserETag_changesWithVersionAndPresence() {
+    // given -> version 3 of the user is cached
+    testUser.setVersion(3L);
+    Mockito.when(userCache.getById(1L)).thenReturn(testUser);
+    Mockito.when(userPresence.getStatus(Mockito.eq(1L), Mockito.any())).thenReturn(UserStatus.ONLINE);
+
+    // when / then
+    assertEquals("1-3-ONLINE", userService.getUserETag(1L));
+    Mockito.verify(userRepository, Mockito.never()).findById(Mockito.anyLong());
+
+    Mockito.when(userPresence.getStatus(Mockito.eq(1L), Mockito.any())).thenReturn(UserStatus.OFFLINE);
+    assertEquals("1-3-OFFLINE", userService.getUserETag(1L));
+  }
+
+  @Test
+  public void getVersionFromETag_onlyETagsOfTheUser() {
+    assertEquals(3L, UserService.getVersionFromETag(1L, "\"1-3-ONLINE\""));
+    assertNull(UserService.getVersionFromETag(2L, "\"1-3-ONLINE\""));
+    assertNull(UserService.getVersionFromETag(1L, "W/\"1-3-ONLINE\""));
+    assertNull(UserService.getVersionFromETag(1L, "\"1-x-ONLINE\""));
+    // ETag of a binary representation
+    assertEquals(3L, UserService.getVersionFromETag(1L, "\"1-3-ONLINE-cbor\""));
+  }
+
+  @Test
+  public void editUser_oneVersionedUpdate_noUniquenessQuery() {
+    // given
+    testUser.setVersion(3L);
+    UserPostDTO userChanges = new UserPostDTO();
+    userChanges.setUsername("otherUsername");
+    Mockito.when(userRepository.updateProfile(1L, "otherUsername", null, 3L)).thenReturn(1);
+
+    // when
+    userService.editUser(testUser, userChanges, null);
+
+    // then -> the unique constraint is the only uniqueness check
+    Mockito.verify(userRepository, Mockito.never()).existsByUsername(Mockito.any());
+    Mockito.verify(userRepository, Mockito.never()).save(Mockito.any());
+    assertEquals(4L, testUser.getVersion());
+    Mockito.verify(eventPublisher, Mockito.times(1)).publishEvent(Mockito.any(UserEventGetDTO.class));
+  }
+
+  @Test
+  public void editUser_usernameTaken_conflict() {
+    testUser.setVersion(3L);
+    UserPostDTO userChanges = new UserPostDTO();
+    userChanges.setUsername("takenUsername");
+    Mockito.when(userRepository.updateProfile(Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.anyLong()))
+        .thenThrow(new DataIntegrityViolationException("UK_USER_USERNAME"));
+
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> userService.editUser(testUser, userChanges, null));
+    assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+    Mockito.verify(eventPublisher, Mockito.never()).publishEvent(Mockito.any());
+  }
+
+  @Test
+  public void editUser_changedConcurrently_retryableFailure() {
+    testUser.setVersion(3L);
+    Mockito.when(userRepository.updateProfile(Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.anyLong()))
+        .thenReturn(0);
+
+    assertThrows(ObjectOptimisticLockingFailureException.class,
+        () -> userService.editUser(testUser, new UserPostDTO(), null));
+    // the next attempt reads the user from the database
+    Mockito.verify(userCache, Mockito.atLeastOnce()).evict(testUser);
+  }
+
+  @Test
+  public void editUser_expectedVersionChangedConcurrently_preconditionFailed() {
+    testUser.setVersion(3L);
+    Mockito.when(userRepository.updateProfile(Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.anyLong()))
+        .thenReturn(0);
+
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> userService.editUser(testUser, new UserPostDTO(), 3L));
+    assertEquals(HttpStatus.PRECONDITION_FAILED, exception.getStatus());
+  }
+
+  @Test
+  public void getUser_cached_noDatabaseLookup() {
+    // given -> the user is cached
+    Mockito.when(userCache.getById(1L)).thenReturn(testUser);
+
+    // when
+    User found = userService.getUser(1L);
+
+    // then
+    assertEquals(testUser.getUsername(), found.getUsername());
+    Mockito.verify(userRepository, Mockito.never()).findById(Mockito.anyLong());
+  }
+
+  @Test
+  public void getUser_notCached_loadedAndCached() {
+    // given -> the user is only in the database
+    Mockito.when(userRepository.findById(1L)).thenReturn(testUser);
+
+    // when
+    User found = userService.getUser(1L);
+
+    // then
+    assertEquals(testUser.getUsername(), found.getUsername());
+    Mockito.verify(userCache, Mockito.times(1)).put(testUser);
+  }
+
+  @Test
+  public void getUserGetDTO_notCached_readByProjection() {
+    // given -> the user is only in the database
+    Mockito.when(userRepository.findUserGetDTOById(1L))
+        .thenReturn(new UserGetDTO(1L, "testName", "testUsername", UserStatus.OFFLINE, null, null));
+    Mockito.when(userPresence.getStatus(Mockito.eq(1L), Mockito.any())).thenReturn(UserStatus.ONLINE);
+
+    // when
+    UserGetDTO found = userService.getUserGetDTO(1L);
+
+    // then
+    assertEquals("testUsername", found.getUsername());
+    assertEquals(UserStatus.ONLINE, found.getStatus());
+    Mockito.verify(userRepository, Mockito.never()).findById(Mockito.anyLong());
+  }
+
+  @Test
+  public void logInUser_validCredentials_presenceUpdatedWithoutWrite() {
+    // given
+    Mockito.when(userRepository.findByUsername("testUsername")).thenReturn(testUser);
+
+    User credentials = new User();
+    credentials.setUsername("testUsername");
+    credentials.setName("testName");
+
+    // when
+    User loggedIn = userService.logInUser(credentials);
+
+    // then
+    assertEquals(UserStatus.ONLINE, loggedIn.getStatus());
+    Mockito.verify(userPresence, Mockito.times(1)).heartbeat(1L);
+    Mockito.verify(userRepository, Mockito.never()).save(Mockito.any());
+  }
+
+  @Test
+  public void logInUser_wrongName_throwsException() {
+    // given
+    Mockito.when(userRepository.findByUsername("testUsername")).thenReturn(testUser);
+
+    User credentials = new User();
+    credentials.setUsername("testUsername");
+    credentials.setName("wrongName");
+
+    // then
+    assertThrows(ResponseStatusException.class, () -> userService.logInUser(credentials));
+    Mockito.verify(userPresence, Mockito.never()).heartbeat(Mockito.anyLong());
+  }
 }
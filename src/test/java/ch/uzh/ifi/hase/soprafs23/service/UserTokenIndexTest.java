@@ -0,0 +1,55 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class UserTokenIndexTest {
+
+  private UserRepository userRepository;
+
+  @BeforeEach
+  public void setup() {
+    userRepository = Mockito.mock(UserRepository.class);
+  }
+
+  @Test
+  public void getUserId_preloaded_neverQueriesDatabase() {
+    UserTokenIndex userTokenIndex = new UserTokenIndex(userRepository, true);
+    userTokenIndex.put("token", 1L);
+
+    assertEquals(1L, userTokenIndex.getUserId("token"));
+    assertNull(userTokenIndex.getUserId("unknown"));
+    Mockito.verifyNoInteractions(userRepository);
+  }
+
+  @Test
+  public void getUserId_onDemand_loadsTokenOnce() {
+    UserTokenIndex userTokenIndex = new UserTokenIndex(userRepository, false);
+    Mockito.when(userRepository.findIdByToken("token")).thenReturn(1L);
+    Mockito.when(userRepository.findIdByToken("unknown")).thenReturn(null);
+
+    assertEquals(1L, userTokenIndex.getUserId("token"));
+    assertEquals(1L, userTokenIndex.getUserId("token"));
+    assertNull(userTokenIndex.getUserId("unknown"));
+
+    Mockito.verify(userRepository, Mockito.times(1)).findIdByToken("token");
+  }
+
+  @Test
+  public void getUserId_onDemandUnknownToken_queriedOnceUntilPut() {
+    UserTokenIndex userTokenIndex = new UserTokenIndex(userRepository, false);
+    Mockito.when(userRepository.findIdByToken("token")).thenReturn(null);
+
+    assertNull(userTokenIndex.getUserId("token"));
+    assertNull(userTokenIndex.getUserId("token"));
+    Mockito.verify(userRepository, Mockito.times(1)).findIdByToken("token");
+
+    userTokenIndex.put("token", 1L);
+    assertEquals(1L, userTokenIndex.getUserId("token"));
+  }
+}